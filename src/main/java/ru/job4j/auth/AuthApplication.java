@@ -6,6 +6,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ru.job4j.auth.timing.TimedBCryptPasswordEncoder;
 
 import javax.sql.DataSource;
 
@@ -13,11 +14,11 @@ import javax.sql.DataSource;
 public class AuthApplication extends SpringBootServletInitializer {
 
     /**
-     * Создает бин BCryptPasswordEncoder
+     * Создает бин BCryptPasswordEncoder, длительность хеширования попадает в заголовок Server-Timing
      */
     @Bean
     public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new TimedBCryptPasswordEncoder();
     }
 
     /**
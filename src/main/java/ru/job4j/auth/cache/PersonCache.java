@@ -0,0 +1,225 @@
+package ru.job4j.auth.cache;
+
+import jdk.jfr.FlightRecorder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.job4j.auth.jfr.SingleFlightEvent;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.repository.PersonRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * PersonCache - локальный кеш пользователей по идентификатору и логину, загружает отсутствующих пользователей из хранилища.
+ * Записи удаляются шиной PersonInvalidationBus при изменении пользователя на любом узле,
+ * срок жизни записи ограничивает устаревание, если сообщение об изменении потерялось.
+ * Одновременные промахи по одному ключу выполняют один запрос к базе данных.
+ * Удаление из кеша отцепляет и выполняющиеся загрузки: поток, пришедший после изменения пользователя,
+ * не получит результат запроса, начатого до изменения.
+ * Статистика объединения загрузок публикуется периодическим событием JFR ru.job4j.auth.SingleFlight.
+ * Возвращаемые объекты общие для всех потоков и не должны изменяться
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Component
+public class PersonCache {
+
+    /**
+     * Хранилище пользователей
+     */
+    private final PersonRepository personRepository;
+
+    private final Map<Integer, Entry> byId = new ConcurrentHashMap<>();
+
+    private final Map<String, Entry> byLogin = new ConcurrentHashMap<>();
+
+    /**
+     * Счетчик удалений. Если во время загрузки пользователя что-то было удалено из кеша,
+     * загруженная запись могла устареть и не должна оставаться в кеше
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Загрузки по логину, которые сейчас выполняются
+     */
+    private final SingleFlight<String, Optional<Person>> loginLoads;
+
+    /**
+     * Загрузки по идентификатору, которые сейчас выполняются
+     */
+    private final SingleFlight<Integer, Optional<Person>> idLoads;
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    /**
+     * Публикация статистики объединения загрузок в JFR
+     */
+    private final Runnable statisticsHook = this::emitStatistics;
+
+    public PersonCache(PersonRepository personRepository,
+                       @Value("${person.cache.max-size:10000}") int maxSize,
+                       @Value("${person.cache.ttl-seconds:300}") long ttlSeconds,
+                       @Value("${person.cache.single-flight-timeout-ms:1000}") long singleFlightTimeoutMs) {
+        this.personRepository = personRepository;
+        this.loginLoads = new SingleFlight<>(singleFlightTimeoutMs);
+        this.idLoads = new SingleFlight<>(singleFlightTimeoutMs);
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Найти пользователя по логину
+     *
+     * @param login логин
+     * @return Optional.of(person) если пользователь найден, иначе Optional.empty()
+     */
+    public Optional<Person> findByLogin(String login) {
+        Entry entry = byLogin.get(login);
+        if (entry != null && !entry.isExpired()) {
+            return Optional.of(entry.person);
+        }
+        return loginLoads.execute(login,
+                () -> load(() -> personRepository.findByLogin(login)),
+                () -> personRepository.findByLogin(login));
+    }
+
+    /**
+     * Найти пользователя по идентификатору
+     *
+     * @param id идентификатор
+     * @return Optional.of(person) если пользователь найден, иначе Optional.empty()
+     */
+    public Optional<Person> findById(int id) {
+        Entry entry = byId.get(id);
+        if (entry != null && !entry.isExpired()) {
+            return Optional.of(entry.person);
+        }
+        return idLoads.execute(id,
+                () -> load(() -> personRepository.findById(id)),
+                () -> personRepository.findById(id));
+    }
+
+    /**
+     * Удалить пользователя из кеша
+     *
+     * @param id идентификатор пользователя
+     */
+    public void evictById(int id) {
+        evictions.incrementAndGet();
+        idLoads.forget(id);
+        loginLoads.forgetAll();
+        Entry entry = byId.remove(id);
+        if (entry != null) {
+            byLogin.remove(entry.person.getLogin(), entry);
+        }
+    }
+
+    /**
+     * Очистить кеш
+     */
+    public void clear() {
+        evictions.incrementAndGet();
+        idLoads.forgetAll();
+        loginLoads.forgetAll();
+        byId.clear();
+        byLogin.clear();
+    }
+
+    @PostConstruct
+    public void registerStatistics() {
+        FlightRecorder.addPeriodicEvent(SingleFlightEvent.class, statisticsHook);
+    }
+
+    @PreDestroy
+    public void logStatistics() {
+        FlightRecorder.removePeriodicEvent(statisticsHook);
+        log.info("Person lookups by login: {}; by id: {}", loginLoads, idLoads);
+    }
+
+    /**
+     * Записать статистику объединения загрузок, вызывается JFR с периодом события
+     */
+    private void emitStatistics() {
+        new SingleFlightEvent("login", loginLoads.getCalls(), loginLoads.getDeduplicated(), loginLoads.getTimeouts())
+                .commit();
+        new SingleFlightEvent("id", idLoads.getCalls(), idLoads.getDeduplicated(), idLoads.getTimeouts())
+                .commit();
+    }
+
+    /**
+     * Загрузить пользователя из хранилища и положить в кеш. Выполняется только потоком,
+     * который первым запросил загрузку: потоки, не дождавшиеся его, выполняют запрос без записи в кеш
+     *
+     * @param query запрос к хранилищу
+     * @return Optional.of(person) если пользователь найден, иначе Optional.empty()
+     */
+    private Optional<Person> load(Supplier<Optional<Person>> query) {
+        long version = evictions.get();
+        Optional<Person> person = query.get();
+        person.ifPresent(p -> put(p, version));
+        return person;
+    }
+
+    /**
+     * Положить пользователя в кеш, если с начала его загрузки ничего не удалялось из кеша
+     *
+     * @param person  пользователь
+     * @param version значение счетчика удалений до загрузки
+     */
+    private void put(Person person, long version) {
+        if (byId.size() >= maxSize) {
+            shrink();
+        }
+        Entry entry = new Entry(person, System.nanoTime() + ttlNanos);
+        Entry previous = byId.put(person.getId(), entry);
+        if (previous != null) {
+            byLogin.remove(previous.person.getLogin(), previous);
+        }
+        byLogin.put(person.getLogin(), entry);
+        if (evictions.get() != version) {
+            byId.remove(person.getId(), entry);
+            byLogin.remove(person.getLogin(), entry);
+        }
+    }
+
+    /**
+     * Освободить место: удалить примерно десятую часть записей
+     */
+    private void shrink() {
+        int toRemove = Math.max(1, maxSize / 10);
+        Iterator<Entry> iterator = byId.values().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            byLogin.remove(entry.person.getLogin(), entry);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Person person;
+
+        private final long expiresAt;
+
+        private Entry(Person person, long expiresAt) {
+            this.person = person;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package ru.job4j.auth.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.job4j.auth.repository.PersonRepository;
+import ru.job4j.auth.service.LoginBloomFilter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PersonInvalidationBus - шина удаления пользователей из локальных кешей всех узлов через PostgreSQL LISTEN/NOTIFY.
+ * Идентификаторы измененных пользователей накапливаются и отправляются одним NOTIFY раз в flush-interval-ms,
+ * поэтому при пачке изменений сообщений немного. Каждый узел слушает канал и удаляет пользователей из своего кеша.
+ * Хеши новых логинов отправляются отдельным сообщением в транзакции создания пользователя
+ * (NOTIFY доставляется при фиксации) и добавляются в фильтр логинов LoginBloomFilter на остальных узлах.
+ * Передается хеш, а не логин: размер сообщения не зависит от длины логина и не превышает ограничение NOTIFY.
+ * После (пере)подключения слушателя кеш очищается полностью, а фильтр логинов перестраивается
+ * в отдельном потоке, так как сообщения за время разрыва потеряны. Перестроение читает всю таблицу
+ * и не должно задерживать отправку сообщений.
+ * Если база данных не PostgreSQL, удаление выполняется только на текущем узле
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Component
+public class PersonInvalidationBus {
+
+    public static final String CHANNEL = "person_invalidation";
+
+    /**
+     * Разделитель узла и идентификаторов в сообщении об изменении пользователей
+     */
+    private static final char IDS_SEPARATOR = ':';
+
+    /**
+     * Разделитель узла и хеша логина в сообщении о новом логине
+     */
+    private static final char LOGIN_SEPARATOR = '+';
+
+    /**
+     * Максимальная длина сообщения. Ограничение PostgreSQL - 8000 байт
+     */
+    private static final int MAX_PAYLOAD = 7000;
+
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private static final int LISTEN_TIMEOUT_MS = 1000;
+
+    /**
+     * Идентификатор узла, чтобы не обрабатывать собственные сообщения
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final DataSource dataSource;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PersonCache personCache;
+
+    private final LoginBloomFilter loginFilter;
+
+    private final PersonRepository personRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long flushIntervalMs;
+
+    /**
+     * Идентификаторы пользователей, о которых еще не отправлено сообщение
+     */
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "person-invalidation-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Поток перестроения фильтра логинов
+     */
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "person-login-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean running;
+
+    public PersonInvalidationBus(DataSource dataSource,
+                                 JdbcTemplate jdbcTemplate,
+                                 PersonCache personCache,
+                                 LoginBloomFilter loginFilter,
+                                 PersonRepository personRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${person.cache.invalidation.flush-interval-ms:20}") long flushIntervalMs) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.personCache = personCache;
+        this.loginFilter = loginFilter;
+        this.personRepository = personRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                log.info("Database is not PostgreSQL, person cache is invalidated on this node only");
+                return;
+            }
+        } catch (SQLException e) {
+            log.error("Exception in the start() method", e);
+        }
+        running = true;
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        executor.execute(this::listen);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (running) {
+            running = false;
+            flush();
+        }
+        executor.shutdownNow();
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Сообщить об изменении пользователя: удалить его из локального кеша сразу, из кешей других узлов - со следующим NOTIFY
+     *
+     * @param id идентификатор пользователя
+     */
+    public void publish(int id) {
+        personCache.evictById(id);
+        if (running) {
+            pending.add(id);
+        }
+    }
+
+    /**
+     * Сообщить другим узлам о новом логине. Вызывается в транзакции создания пользователя:
+     * сообщение будет доставлено только после ее фиксации. Отправляется хеш логина фиксированной длины
+     *
+     * @param login логин
+     */
+    public void publishLogin(String login) {
+        if (running) {
+            notify(nodeId + LOGIN_SEPARATOR + Long.toHexString(LoginBloomFilter.hash(login)));
+        }
+    }
+
+    /**
+     * Отправить накопленные идентификаторы, при необходимости несколькими сообщениями
+     */
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            StringBuilder payload = new StringBuilder(nodeId).append(IDS_SEPARATOR);
+            int prefixLength = payload.length();
+            Iterator<Integer> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                Integer id = iterator.next();
+                iterator.remove();
+                if (payload.length() > prefixLength) {
+                    payload.append(',');
+                }
+                payload.append(id);
+                if (payload.length() >= MAX_PAYLOAD) {
+                    notify(payload.toString());
+                    payload.setLength(prefixLength);
+                }
+            }
+            if (payload.length() > prefixLength) {
+                notify(payload.toString());
+            }
+        } catch (Exception e) {
+            log.error("Exception in the flush() method", e);
+        }
+    }
+
+    private void notify(String payload) {
+        jdbcTemplate.query("select pg_notify(?, ?)", rs -> null, CHANNEL, payload);
+    }
+
+    /**
+     * Слушать канал на выделенном соединении, переподключаться при любых ошибках,
+     * иначе узел молча остался бы только с ограничением срока жизни записей кеша
+     */
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                personCache.clear();
+                if (reconnect) {
+                    rebuildExecutor.execute(this::rebuildLoginFilter);
+                }
+                reconnect = true;
+                log.info("Listening for person cache invalidations on channel {}", CHANNEL);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(LISTEN_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                log.warn("Person invalidation listener lost connection, reconnecting", e);
+                sleepBeforeReconnect();
+            } catch (RuntimeException e) {
+                log.error("Person invalidation listener failed, reconnecting", e);
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void rebuildLoginFilter() {
+        try {
+            transactionTemplate.executeWithoutResult(
+                    status -> loginFilter.rebuild(personRepository::streamAllLogins));
+        } catch (Exception e) {
+            log.error("Exception in the rebuildLoginFilter() method", e);
+        }
+    }
+
+    /**
+     * Обработать сообщение вида "nodeId:1,2,3" или "nodeId+хеш логина в шестнадцатеричном виде".
+     * Идентификатор узла не содержит разделителей, поэтому первый разделитель отделяет его от данных
+     *
+     * @param payload сообщение
+     */
+    private void handle(String payload) {
+        int separator = 0;
+        while (separator < payload.length()
+                && payload.charAt(separator) != IDS_SEPARATOR && payload.charAt(separator) != LOGIN_SEPARATOR) {
+            separator++;
+        }
+        if (separator == payload.length() || payload.startsWith(nodeId)) {
+            return;
+        }
+        if (payload.charAt(separator) == LOGIN_SEPARATOR) {
+            try {
+                loginFilter.addHash(Long.parseUnsignedLong(payload.substring(separator + 1), 16));
+            } catch (NumberFormatException e) {
+                log.warn("Malformed person invalidation payload: {}", payload);
+            }
+            return;
+        }
+        for (String id : payload.substring(separator + 1).split(",")) {
+            try {
+                personCache.evictById(Integer.parseInt(id));
+            } catch (NumberFormatException e) {
+                log.warn("Malformed person invalidation payload: {}", payload);
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
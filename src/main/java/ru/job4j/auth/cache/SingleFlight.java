@@ -0,0 +1,129 @@
+package ru.job4j.auth.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlight - объединение одновременных одинаковых загрузок.
+ * Первый поток выполняет загрузку, остальные потоки с тем же ключом ждут и получают его результат.
+ * Если ожидание дольше timeoutMs, поток выполняет запасную загрузку сам.
+ * После forget() потоки, пришедшие позже, не присоединяются к начатой ранее загрузке и запускают новую.
+ * ConcurrentHashMap блокирует только отдельные ячейки, поэтому загрузки разных ключей не мешают друг другу
+ *
+ * @param <K> тип ключа
+ * @param <V> тип результата
+ * @author Ilya Kaltygin
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Выполняющиеся загрузки
+     */
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final long timeoutMs;
+
+    /**
+     * Количество вызовов
+     */
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * Количество вызовов, получивших результат чужой загрузки
+     */
+    private final LongAdder deduplicated = new LongAdder();
+
+    /**
+     * Количество вызовов, не дождавшихся чужой загрузки
+     */
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlight(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Выполнить загрузку или дождаться уже выполняющейся загрузки с тем же ключом
+     *
+     * @param key      ключ
+     * @param loader   загрузка, выполняется только первым потоком
+     * @param fallback загрузка потока, не дождавшегося чужой загрузки
+     * @return результат загрузки
+     */
+    public V execute(K key, Supplier<V> loader, Supplier<V> fallback) {
+        calls.increment();
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            return await(existing, fallback);
+        }
+        try {
+            V result = loader.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Не присоединять новые вызовы к выполняющейся загрузке ключа.
+     * Потоки, которые уже ждут, получат ее результат
+     *
+     * @param key ключ
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * Не присоединять новые вызовы ни к одной выполняющейся загрузке
+     */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("calls=%d, deduplicated=%d, timeouts=%d", getCalls(), getDeduplicated(), getTimeouts());
+    }
+
+    private V await(CompletableFuture<V> existing, Supplier<V> fallback) {
+        try {
+            V result = existing.get(timeoutMs, TimeUnit.MILLISECONDS);
+            deduplicated.increment();
+            return result;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            return fallback.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.job4j.auth.config;
+
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import ru.job4j.auth.repository.PersonRepository;
+
+/**
+ * EmbeddedRepositoryConfig - в профиле embedded хранилище пользователей PersonRepository
+ * реализуется EmbeddedPersonRepository, остальные хранилища остаются JPA
+ *
+ * @author Ilya Kaltygin
+ */
+@Configuration
+@Profile("embedded")
+@EnableJpaRepositories(
+        basePackages = "ru.job4j.auth.repository",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = PersonRepository.class))
+public class EmbeddedRepositoryConfig {
+}
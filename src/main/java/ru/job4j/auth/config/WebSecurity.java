@@ -1,6 +1,7 @@
 package ru.job4j.auth.config;
 
 import lombok.AllArgsConstructor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
@@ -9,13 +10,17 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import ru.job4j.auth.filter.ConcurrencyLimitFilter;
 import ru.job4j.auth.filter.JWTAuthenticationFilter;
 import ru.job4j.auth.filter.JWTAuthorizationFilter;
+import ru.job4j.auth.filter.RoleAuthorities;
 import ru.job4j.auth.service.UserDetailsServiceImpl;
 
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.LOGIN_AVAILABLE_URL;
 import static ru.job4j.auth.filter.JWTAuthenticationFilter.SIGN_UP_URL;
 
 /**
@@ -31,6 +36,8 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
 
     private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+
     /**
      * Устанавливает настройки безопасности для запросов, указывает правила аутентификации и авторизации
      *
@@ -41,8 +48,11 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
     protected void configure(HttpSecurity http) throws Exception {
         http.cors().and().csrf().disable().authorizeRequests()
                 .antMatchers(HttpMethod.POST, SIGN_UP_URL).permitAll()
+                .antMatchers(HttpMethod.GET, LOGIN_AVAILABLE_URL).permitAll()
+                .antMatchers(HttpMethod.DELETE, "/person/**").hasRole(RoleAuthorities.ADMIN)
                 .anyRequest().authenticated()
                 .and()
+                .addFilterBefore(concurrencyLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilter(new JWTAuthenticationFilter(authenticationManager()))
                 .addFilter(new JWTAuthorizationFilter(authenticationManager()))
                 /* this disables session creation on Spring Security */
@@ -60,6 +70,19 @@ public class WebSecurity extends WebSecurityConfigurerAdapter {
         auth.userDetailsService(userDetailsServiceImpl).passwordEncoder(bCryptPasswordEncoder);
     }
 
+    /**
+     * Отключает автоматическую регистрацию ConcurrencyLimitFilter в контейнере сервлетов:
+     * фильтр выполняется только в цепочке Spring Security
+     *
+     * @param filter фильтр ограничения нагрузки
+     */
+    @Bean
+    FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilterRegistration(ConcurrencyLimitFilter filter) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     /**
      * Создает бин CorsConfigurationSource
      */
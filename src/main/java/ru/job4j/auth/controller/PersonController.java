@@ -1,24 +1,25 @@
 package ru.job4j.auth.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.job4j.auth.dto.ErrorResponse;
 import ru.job4j.auth.dto.PersonDTO;
 import ru.job4j.auth.model.Person;
+import ru.job4j.auth.model.PersonChange;
+import ru.job4j.auth.service.PersonChangeFeed;
 import ru.job4j.auth.service.PersonService;
 import ru.job4j.auth.validation.Operation;
 
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * PersonController - контроллер, отвечающий за обработку CRUD операций с пользователем
@@ -37,9 +38,9 @@ public class PersonController {
     private final PersonService personService;
 
     /**
-     * Функционал для работы с JSON
+     * Журнал изменений пользователей
      */
-    private final ObjectMapper objectMapper;
+    private final PersonChangeFeed changeFeed;
 
     /**
      * Хешировать пароль пользователя и сохранить пользователя в базу данных
@@ -65,6 +66,43 @@ public class PersonController {
         return personService.findAll();
     }
 
+    /**
+     * Проверить, свободен ли логин
+     *
+     * @param login логин
+     * @return объект вида {"available": true}
+     */
+    @GetMapping("/available")
+    public Map<String, Boolean> isLoginAvailable(@RequestParam String login) {
+        return Map.of("available", personService.isLoginAvailable(login));
+    }
+
+    /**
+     * Найти изменения пользователей с номером больше since, не более PersonChangeFeed.PAGE_SIZE
+     *
+     * @param since номер последнего полученного изменения
+     * @return список изменений в порядке возрастания номера
+     */
+    @GetMapping("/changes")
+    public List<PersonChange> findChanges(@RequestParam(defaultValue = "0") long since) {
+        return changeFeed.findSince(since);
+    }
+
+    /**
+     * Подписаться на изменения пользователей (Server-Sent Events).
+     * При переподключении номер последнего полученного изменения берется из заголовка Last-Event-ID
+     *
+     * @param since       номер последнего полученного изменения
+     * @param lastEventId заголовок Last-Event-ID
+     * @return поток событий
+     */
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(defaultValue = "0") long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return changeFeed.subscribe(lastEventId != null ? lastEventId : since)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many subscribers"));
+    }
+
     /**
      * Найти пользователя по идентификатору
      *
@@ -147,23 +185,13 @@ public class PersonController {
     /**
      * Метод обрабатывает все исключения IllegalArgumentException, которые возникают в методах контроллера
      *
-     * @param e        исключение, которое было сгенирировано и перехвачено данным методом
-     * @param request  запрос
-     * @param response ответ
-     * @throws IOException exception
+     * @param e исключение, которое было сгенирировано и перехвачено данным методом
+     * @return ответ 400 с описанием ошибки
      */
     @ExceptionHandler(value = {IllegalArgumentException.class})
-    public void handleException(Exception e,
-                                HttpServletRequest request,
-                                HttpServletResponse response) throws IOException {
-        response.setStatus(HttpStatus.BAD_REQUEST.value());
-        response.setContentType("application/json");
-        response.getWriter().write(objectMapper.writeValueAsString(new HashMap<>() {
-            {
-                put("message", e.getMessage());
-                put("details", e.getMessage());
-            }
-        }));
-        log.error(e.getMessage());
+    public ResponseEntity<ErrorResponse> handleException(Exception e) {
+        log.error("Illegal argument: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorResponse(e.getMessage(), e.getMessage()));
     }
 }
@@ -0,0 +1,25 @@
+package ru.job4j.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * ErrorResponse - тело ответа с описанием ошибки.
+ * Неизменяемый объект, который Jackson сериализует без промежуточной коллекции
+ *
+ * @author Ilya Kaltygin
+ */
+@Getter
+@AllArgsConstructor
+public class ErrorResponse {
+
+    /**
+     * Краткое описание ошибки
+     */
+    private final String message;
+
+    /**
+     * Подробности ошибки
+     */
+    private final String details;
+}
@@ -0,0 +1,129 @@
+package ru.job4j.auth.filter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AimdLimiter - адаптивный лимит одновременных запросов по алгоритму AIMD
+ * (additive increase, multiplicative decrease).
+ * Если запрос выполнялся дольше допустимого, лимит уменьшается в BACKOFF_RATIO раз,
+ * иначе при загрузке не менее половины лимита лимит увеличивается на единицу.
+ * Лимит уменьшается не чаще одного раза за допустимую задержку: медленные запросы одной волны
+ * завершаются почти одновременно и уменьшают лимит один раз, а не по разу на каждый запрос
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+public class AimdLimiter {
+
+    /**
+     * Во сколько раз уменьшается лимит при превышении допустимой задержки
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    /**
+     * Допустимая задержка запроса в наносекундах
+     */
+    private final long timeoutNanos;
+
+    /**
+     * Количество выполняющихся запросов
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Текущий лимит
+     */
+    private volatile double limit;
+
+    /**
+     * Время последнего уменьшения лимита, System.nanoTime()
+     */
+    private long lastDecreaseNanos;
+
+    /**
+     * @param name         название лимита для логов
+     * @param initialLimit начальный лимит
+     * @param minLimit     минимальный лимит
+     * @param maxLimit     максимальный лимит
+     * @param timeoutMs    допустимая задержка запроса в миллисекундах
+     */
+    public AimdLimiter(String name, int initialLimit, int minLimit, int maxLimit, long timeoutMs) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - timeoutNanos;
+    }
+
+    /**
+     * Занять место для запроса
+     *
+     * @return true если лимит не превышен, иначе false и запрос нужно отклонить
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освободить место и пересчитать лимит по задержке запроса
+     *
+     * @param startNanos время начала запроса, System.nanoTime()
+     */
+    public void release(long startNanos) {
+        int current = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        if (now - startNanos > timeoutNanos) {
+            decrease(now);
+        } else if (current * 2 >= limit) {
+            increase();
+        }
+    }
+
+    /**
+     * @return текущий лимит
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return количество выполняющихся запросов
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void decrease(long now) {
+        if (now - lastDecreaseNanos < timeoutNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double previous = limit;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        if ((int) previous != (int) limit) {
+            log.debug("Limiter {}: limit decreased to {}", name, (int) limit);
+        }
+    }
+
+    private synchronized void increase() {
+        limit = Math.min(maxLimit, limit + 1);
+    }
+}
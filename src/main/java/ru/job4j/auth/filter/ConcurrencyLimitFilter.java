@@ -0,0 +1,86 @@
+package ru.job4j.auth.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.SIGN_UP_URL;
+
+/**
+ * ConcurrencyLimitFilter - сбрасывает нагрузку при перегрузке сервиса.
+ * Вход и регистрация (BCrypt, нагрузка на процессор) и остальные запросы ограничиваются
+ * отдельными адаптивными лимитами. Запросы сверх лимита сразу получают 503.
+ * Фильтр подключается в цепочку Spring Security (WebSecurity), автоматическая регистрация в контейнере отключена
+ *
+ * @author Ilya Kaltygin
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    public static final String LOGIN_URL = "/login";
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Лимит для входа и регистрации: хеширование BCrypt занимает процессор, поэтому лимит зависит от числа ядер
+     */
+    private final AimdLimiter authLimiter;
+
+    /**
+     * Лимит для остальных запросов
+     */
+    private final AimdLimiter apiLimiter;
+
+    /**
+     * Значение заголовка Retry-After в секундах
+     */
+    private final String retryAfter;
+
+    public ConcurrencyLimitFilter(@Value("${concurrency-limit.auth.initial-per-cpu:2}") int authInitialPerCpu,
+                                  @Value("${concurrency-limit.auth.min:1}") int authMin,
+                                  @Value("${concurrency-limit.auth.max-per-cpu:8}") int authMaxPerCpu,
+                                  @Value("${concurrency-limit.auth.timeout-ms:1000}") long authTimeoutMs,
+                                  @Value("${concurrency-limit.api.initial:100}") int apiInitial,
+                                  @Value("${concurrency-limit.api.min:10}") int apiMin,
+                                  @Value("${concurrency-limit.api.max:1000}") int apiMax,
+                                  @Value("${concurrency-limit.api.timeout-ms:250}") long apiTimeoutMs,
+                                  @Value("${concurrency-limit.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.authLimiter = new AimdLimiter("auth", authInitialPerCpu * PROCESSORS, authMin,
+                authMaxPerCpu * PROCESSORS, authTimeoutMs);
+        this.apiLimiter = new AimdLimiter("api", apiInitial, apiMin, apiMax, apiTimeoutMs);
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req,
+                                    HttpServletResponse res,
+                                    FilterChain chain) throws IOException, ServletException {
+        AimdLimiter limiter = isAuthRequest(req) ? authLimiter : apiLimiter;
+        if (!limiter.tryAcquire()) {
+            res.setHeader("Retry-After", retryAfter);
+            res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            limiter.release(start);
+        }
+    }
+
+    private static boolean isAuthRequest(HttpServletRequest req) {
+        if (!HttpMethod.POST.matches(req.getMethod())) {
+            return false;
+        }
+        String path = req.getServletPath();
+        return LOGIN_URL.equals(path) || SIGN_UP_URL.equals(path);
+    }
+}
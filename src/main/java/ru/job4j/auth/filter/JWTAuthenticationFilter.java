@@ -9,7 +9,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import ru.job4j.auth.jfr.TokenIssueEvent;
 import ru.job4j.auth.model.Person;
+import ru.job4j.auth.timing.ServerTiming;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -40,6 +42,8 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
 
     public static final String SIGN_UP_URL = "/person/sign-up";
 
+    public static final String LOGIN_AVAILABLE_URL = "/person/available";
+
     private AuthenticationManager auth;
 
     /**
@@ -55,8 +59,10 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                                                 HttpServletResponse res)
             throws AuthenticationException {
         try {
+            long start = ServerTiming.start();
             Person creds = new ObjectMapper()
                     .readValue(req.getInputStream(), Person.class);
+            ServerTiming.stop(ServerTiming.Phase.CREDENTIALS, start);
 
             return auth.authenticate(
                     new UsernamePasswordAuthenticationToken(
@@ -70,7 +76,8 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
     }
 
     /**
-     * После успешной аутентификации создает токен JWT. токен добавляется в заголовок ответа с префиксом Bearer
+     * После успешной аутентификации создает токен JWT. токен добавляется в заголовок ответа с префиксом Bearer.
+     * Роли пользователя записываются в токен, чтобы при авторизации запросов не обращаться к базе данных
      *
      * @param req   запрос
      * @param res   ответ
@@ -85,10 +92,15 @@ public class JWTAuthenticationFilter extends UsernamePasswordAuthenticationFilte
                                             FilterChain chain,
                                             Authentication auth) throws IOException, ServletException {
 
+        TokenIssueEvent event = new TokenIssueEvent();
+        event.begin();
+        String login = ((User) auth.getPrincipal()).getUsername();
         String token = JWT.create()
-                .withSubject(((User) auth.getPrincipal()).getUsername())
+                .withSubject(login)
+                .withArrayClaim(RoleAuthorities.ROLES_CLAIM, RoleAuthorities.toClaim(auth.getAuthorities()))
                 .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
                 .sign(HMAC512(SECRET.getBytes()));
         res.addHeader(HEADER_STRING, TOKEN_PREFIX + token);
+        event.commit(login, "issued");
     }
 }
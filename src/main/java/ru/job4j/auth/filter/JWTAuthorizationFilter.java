@@ -1,18 +1,24 @@
 package ru.job4j.auth.filter;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import ru.job4j.auth.jfr.TokenVerifyEvent;
+import ru.job4j.auth.timing.ServerTiming;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
 import static ru.job4j.auth.filter.JWTAuthenticationFilter.*;
 
@@ -23,13 +29,49 @@ import static ru.job4j.auth.filter.JWTAuthenticationFilter.*;
  */
 public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
 
+    /**
+     * Минимальная длина токена: заголовок, полезная нагрузка и подпись HS512
+     */
+    private static final int MIN_TOKEN_LENGTH = 100;
+
+    /**
+     * Максимальная длина токена. Выпускаемые сервисом токены значительно короче
+     */
+    private static final int MAX_TOKEN_LENGTH = 4096;
+
+    /**
+     * Максимальная длина заголовка токена
+     */
+    private static final int MAX_HEADER_LENGTH = 128;
+
+    /**
+     * Алгоритм подписи токенов, выпускаемых сервисом
+     */
+    private static final String ALGORITHM = "\"alg\":\"HS512\"";
+
+    /**
+     * Количество ячеек в кеше отклоненных токенов
+     */
+    private static final int REJECTED_CACHE_SIZE = 4096;
+
+    private final JWTVerifier verifier = JWT.require(Algorithm.HMAC512(SECRET.getBytes())).build();
+
+    private final RejectedTokenCache rejectedTokens;
+
     public JWTAuthorizationFilter(AuthenticationManager authManager) {
+        this(authManager, new RejectedTokenCache(REJECTED_CACHE_SIZE));
+    }
+
+    JWTAuthorizationFilter(AuthenticationManager authManager, RejectedTokenCache rejectedTokens) {
         super(authManager);
+        this.rejectedTokens = rejectedTokens;
     }
 
     /**
      * Перехватыывет запрос и проверяет, содержит ли заголовок запроса токен JWT. Если токен действительный, то устанавливается контекст безопасности
-     * и передается управление следующему фильтру в цепочке, иначе запрос передается как есть
+     * и передается управление следующему фильтру в цепочке, иначе запрос передается как есть.
+     * Токены с неверной структурой, чужим алгоритмом или уже отклоненные ранее отсекаются без проверки подписи.
+     * На недействительный токен отвечает 401 без передачи запроса дальше
      *
      * @param req   запрос
      * @param res   ответ
@@ -48,31 +90,111 @@ public class JWTAuthorizationFilter extends BasicAuthenticationFilter {
             return;
         }
 
-        UsernamePasswordAuthenticationToken authentication = getAuthentication(req);
+        TokenVerifyEvent event = new TokenVerifyEvent();
+        event.begin();
+        String token = header.substring(TOKEN_PREFIX.length());
+        if (!isWellFormed(token)) {
+            event.commit(null, "malformed");
+            reject(res);
+            return;
+        }
+        if (rejectedTokens.contains(token)) {
+            event.commit(null, "rejected-cached");
+            reject(res);
+            return;
+        }
+
+        UsernamePasswordAuthenticationToken authentication;
+        long start = ServerTiming.start();
+        try {
+            authentication = getAuthentication(token);
+        } catch (JWTVerificationException e) {
+            rejectedTokens.add(token);
+            event.commit(null, "invalid");
+            reject(res);
+            return;
+        } finally {
+            ServerTiming.stop(ServerTiming.Phase.JWT, start);
+        }
+        event.commit(authentication == null ? null : (String) authentication.getPrincipal(), "valid");
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
         chain.doFilter(req, res);
     }
 
     /**
-     * Извлекает токен из зпроса и проверяет его действительность.
-     * @param request запрос
-     * @return null если пользователь или токен не найдены, иначе UsernamePasswordAuthenticationToken
+     * Проверяет действительность токена.
+     * @param token токен без префикса Bearer
+     * @return null если пользователь не найден, иначе UsernamePasswordAuthenticationToken
+     * @throws JWTVerificationException если подпись неверна или срок действия токена истек
      */
-    private UsernamePasswordAuthenticationToken getAuthentication(HttpServletRequest request) {
-        String token = request.getHeader(HEADER_STRING);
-        if (token != null) {
-            /* parse the token. */
-            String user = JWT.require(Algorithm.HMAC512(SECRET.getBytes()))
-                    .build()
-                    .verify(token.replace(TOKEN_PREFIX, ""))
-                    .getSubject();
-
-            if (user != null) {
-                return new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
-            }
-            return null;
+    private UsernamePasswordAuthenticationToken getAuthentication(String token) {
+        /* parse the token. */
+        DecodedJWT jwt = verifier.verify(token);
+        String user = jwt.getSubject();
+
+        if (user != null) {
+            return new UsernamePasswordAuthenticationToken(user, null,
+                    RoleAuthorities.fromClaim(jwt.getClaim(RoleAuthorities.ROLES_CLAIM).asList(String.class)));
         }
         return null;
     }
+
+    /**
+     * Дешевая проверка структуры токена до проверки подписи: длина, три непустые части
+     * из символов base64url и алгоритм HS512 в заголовке
+     *
+     * @param token токен без префикса Bearer
+     * @return true если токен может быть выпущен этим сервисом
+     */
+    private static boolean isWellFormed(String token) {
+        int length = token.length();
+        if (length < MIN_TOKEN_LENGTH || length > MAX_TOKEN_LENGTH) {
+            return false;
+        }
+        int firstDot = -1;
+        int secondDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (firstDot < 0) {
+                    firstDot = i;
+                } else if (secondDot < 0) {
+                    secondDot = i;
+                } else {
+                    return false;
+                }
+            } else if (!isBase64Url(c)) {
+                return false;
+            }
+        }
+        if (firstDot <= 0 || firstDot > MAX_HEADER_LENGTH
+                || secondDot <= firstDot + 1 || secondDot == length - 1) {
+            return false;
+        }
+        try {
+            String jwtHeader = new String(
+                    Base64.getUrlDecoder().decode(token.substring(0, firstDot)), StandardCharsets.UTF_8);
+            return jwtHeader.replace(" ", "").contains(ALGORITHM);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isBase64Url(char c) {
+        return c >= 'A' && c <= 'Z'
+                || c >= 'a' && c <= 'z'
+                || c >= '0' && c <= '9'
+                || c == '-' || c == '_';
+    }
+
+    /**
+     * Ответ 401 для недействительного токена
+     *
+     * @param res ответ
+     */
+    private static void reject(HttpServletResponse res) {
+        res.setHeader("WWW-Authenticate", "Bearer error=\"invalid_token\"");
+        res.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+    }
 }
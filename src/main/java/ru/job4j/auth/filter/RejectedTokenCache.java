@@ -0,0 +1,80 @@
+package ru.job4j.auth.filter;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RejectedTokenCache - ограниченный по размеру кеш отпечатков отклоненных JWT токенов.
+ * Токен с неверной подписью или истекшим сроком никогда не станет действительным,
+ * поэтому повторная проверка такого токена не нужна.
+ * Кеш прямого отображения без блокировок: новый отпечаток вытесняет старый из той же ячейки
+ *
+ * @author Ilya Kaltygin
+ */
+public class RejectedTokenCache {
+
+    /**
+     * Пустая ячейка
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * Отпечатки токенов
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * Маска для вычисления номера ячейки
+     */
+    private final int mask;
+
+    /**
+     * Случайная соль, чтобы отпечатки нельзя было подобрать заранее
+     */
+    private final long seed = new SecureRandom().nextLong();
+
+    /**
+     * @param capacity количество ячеек, округляется вверх до степени двойки
+     */
+    public RejectedTokenCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Запомнить отклоненный токен
+     *
+     * @param token токен без префикса Bearer
+     */
+    public void add(String token) {
+        long digest = digest(token);
+        slots.set((int) digest & mask, digest);
+    }
+
+    /**
+     * Проверить, был ли токен отклонен ранее
+     *
+     * @param token токен без префикса Bearer
+     * @return true если токен уже был отклонен
+     */
+    public boolean contains(String token) {
+        long digest = digest(token);
+        return slots.get((int) digest & mask) == digest;
+    }
+
+    /**
+     * 64-битный отпечаток токена: FNV-1a с солью и перемешиванием fmix64. Никогда не равен EMPTY
+     */
+    private long digest(String token) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < token.length(); i++) {
+            hash ^= token.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+}
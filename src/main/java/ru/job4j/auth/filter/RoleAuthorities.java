@@ -0,0 +1,89 @@
+package ru.job4j.auth.filter;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RoleAuthorities - преобразование ролей пользователя в компактный claim JWT токена и обратно.
+ * Объекты GrantedAuthority создаются один раз и переиспользуются для всех запросов
+ *
+ * @author Ilya Kaltygin
+ */
+public final class RoleAuthorities {
+
+    public static final String ROLES_CLAIM = "rol";
+
+    public static final String ROLE_PREFIX = "ROLE_";
+
+    public static final String USER = "USER";
+
+    public static final String ADMIN = "ADMIN";
+
+    /**
+     * Роли по их короткому названию (без префикса ROLE_)
+     */
+    private static final Map<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
+    static {
+        AUTHORITIES.put(USER, new SimpleGrantedAuthority(ROLE_PREFIX + USER));
+        AUTHORITIES.put(ADMIN, new SimpleGrantedAuthority(ROLE_PREFIX + ADMIN));
+    }
+
+    private RoleAuthorities() {
+    }
+
+    /**
+     * Получить роль по полному названию, например ROLE_ADMIN
+     *
+     * @param name название роли
+     * @return объект GrantedAuthority
+     */
+    public static GrantedAuthority byName(String name) {
+        return byShortName(name.startsWith(ROLE_PREFIX) ? name.substring(ROLE_PREFIX.length()) : name);
+    }
+
+    /**
+     * Сформировать значение claim: короткие названия ролей
+     *
+     * @param authorities роли пользователя
+     * @return массив коротких названий ролей
+     */
+    public static String[] toClaim(Collection<? extends GrantedAuthority> authorities) {
+        return authorities.stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(a -> a.startsWith(ROLE_PREFIX))
+                .map(a -> a.substring(ROLE_PREFIX.length()))
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Восстановить роли из значения claim. Подпись токена уже проверена, поэтому значениям можно доверять
+     *
+     * @param claim короткие названия ролей, может быть null для токенов без ролей
+     * @return список ролей
+     */
+    public static List<GrantedAuthority> fromClaim(List<String> claim) {
+        if (claim == null || claim.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (claim.size() == 1) {
+            return Collections.singletonList(byShortName(claim.get(0)));
+        }
+        List<GrantedAuthority> result = new ArrayList<>(claim.size());
+        for (String role : claim) {
+            result.add(byShortName(role));
+        }
+        return result;
+    }
+
+    private static GrantedAuthority byShortName(String role) {
+        return AUTHORITIES.computeIfAbsent(role, r -> new SimpleGrantedAuthority(ROLE_PREFIX + r));
+    }
+}
@@ -0,0 +1,41 @@
+package ru.job4j.auth.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * AuthEvent - базовое событие Java Flight Recorder сервиса авторизации.
+ * События выключены по умолчанию и включаются профилем jfr/auth.jfc.
+ * Пока событие выключено, begin() и commit() ничего не делают, а поля не вычисляются
+ *
+ * @author Ilya Kaltygin
+ */
+@Enabled(false)
+@StackTrace(false)
+@Category({"job4j", "Auth"})
+public abstract class AuthEvent extends Event {
+
+    @Label("Login Hash")
+    protected long loginHash;
+
+    @Label("Outcome")
+    protected String outcome;
+
+    /**
+     * Завершить событие и записать его, если оно включено и превысило порог длительности
+     *
+     * @param login   логин, в событие попадает только его ключевой хеш LoginHash
+     * @param outcome результат операции
+     */
+    public void commit(String login, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.loginHash = LoginHash.of(login);
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
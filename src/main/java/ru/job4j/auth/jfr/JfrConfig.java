@@ -0,0 +1,25 @@
+package ru.job4j.auth.jfr;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JfrConfig - передает событиям JFR ключ хеширования логинов из свойства jfr.login-hash-secret
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Configuration
+public class JfrConfig {
+
+    public JfrConfig(@Value("${jfr.login-hash-secret:}") String loginHashSecret) {
+        if (loginHashSecret.isEmpty()) {
+            log.info("jfr.login-hash-secret is not set, login hashes in JFR events are random per process");
+        } else {
+            LoginHash.setKey(loginHashSecret.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
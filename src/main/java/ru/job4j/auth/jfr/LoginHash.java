@@ -0,0 +1,85 @@
+package ru.job4j.auth.jfr;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * LoginHash - ключевой хеш логина (HMAC-SHA256, усеченный до long) для событий JFR.
+ * Без ключа хеш нельзя обратить или сопоставить со словарем логинов.
+ * Ключ задается свойством jfr.login-hash-secret, одинаковый ключ на всех узлах позволяет сопоставлять их записи.
+ * Пока ключ не задан, используется случайный ключ процесса
+ *
+ * @author Ilya Kaltygin
+ */
+public final class LoginHash {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final int RANDOM_KEY_SIZE = 32;
+
+    private static volatile SecretKeySpec key = randomKey();
+
+    /**
+     * Mac не потокобезопасен, поэтому у каждого потока свой экземпляр для текущего ключа
+     */
+    private static final ThreadLocal<KeyedMac> MAC = new ThreadLocal<>();
+
+    private LoginHash() {
+    }
+
+    /**
+     * Задать ключ хеширования
+     *
+     * @param secret секрет развертывания
+     */
+    public static void setKey(byte[] secret) {
+        key = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    /**
+     * Вычислить хеш логина
+     *
+     * @param login логин
+     * @return первые 8 байт HMAC-SHA256 логина или 0, если логин неизвестен
+     */
+    public static long of(String login) {
+        if (login == null) {
+            return 0;
+        }
+        SecretKeySpec current = key;
+        KeyedMac keyed = MAC.get();
+        if (keyed == null || keyed.key != current) {
+            keyed = new KeyedMac(current);
+            MAC.set(keyed);
+        }
+        byte[] digest = keyed.mac.doFinal(login.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private static SecretKeySpec randomKey() {
+        byte[] secret = new byte[RANDOM_KEY_SIZE];
+        new SecureRandom().nextBytes(secret);
+        return new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    private static final class KeyedMac {
+
+        private final SecretKeySpec key;
+
+        private final Mac mac;
+
+        private KeyedMac(SecretKeySpec key) {
+            this.key = key;
+            try {
+                this.mac = Mac.getInstance(ALGORITHM);
+                this.mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
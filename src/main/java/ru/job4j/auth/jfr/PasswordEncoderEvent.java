@@ -0,0 +1,21 @@
+package ru.job4j.auth.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * PasswordEncoderEvent - хеширование или проверка пароля BCrypt
+ *
+ * @author Ilya Kaltygin
+ */
+@Name("ru.job4j.auth.PasswordEncoder")
+@Label("Password Encoder")
+public class PasswordEncoderEvent extends AuthEvent {
+
+    @Label("Operation")
+    private String operation;
+
+    public PasswordEncoderEvent(String operation) {
+        this.operation = operation;
+    }
+}
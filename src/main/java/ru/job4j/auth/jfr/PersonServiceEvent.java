@@ -0,0 +1,21 @@
+package ru.job4j.auth.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * PersonServiceEvent - вызов метода сервиса пользователей
+ *
+ * @author Ilya Kaltygin
+ */
+@Name("ru.job4j.auth.PersonService")
+@Label("Person Service")
+public class PersonServiceEvent extends AuthEvent {
+
+    @Label("Operation")
+    private String operation;
+
+    public PersonServiceEvent(String operation) {
+        this.operation = operation;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.job4j.auth.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * SingleFlightEvent - периодическая статистика объединения загрузок пользователей.
+ * Счетчики накопительные с момента запуска приложения
+ *
+ * @author Ilya Kaltygin
+ */
+@Name("ru.job4j.auth.SingleFlight")
+@Label("Single Flight")
+@Enabled(false)
+@StackTrace(false)
+@Period("60 s")
+@Category({"job4j", "Auth"})
+public class SingleFlightEvent extends Event {
+
+    @Label("Key")
+    private String key;
+
+    @Label("Calls")
+    private long calls;
+
+    @Label("Deduplicated")
+    private long deduplicated;
+
+    @Label("Timeouts")
+    private long timeouts;
+
+    public SingleFlightEvent(String key, long calls, long deduplicated, long timeouts) {
+        this.key = key;
+        this.calls = calls;
+        this.deduplicated = deduplicated;
+        this.timeouts = timeouts;
+    }
+}
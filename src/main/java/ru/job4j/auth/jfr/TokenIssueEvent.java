@@ -0,0 +1,14 @@
+package ru.job4j.auth.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * TokenIssueEvent - выпуск JWT токена после успешного входа
+ *
+ * @author Ilya Kaltygin
+ */
+@Name("ru.job4j.auth.TokenIssue")
+@Label("Token Issue")
+public class TokenIssueEvent extends AuthEvent {
+}
@@ -0,0 +1,14 @@
+package ru.job4j.auth.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * TokenVerifyEvent - проверка JWT токена запроса
+ *
+ * @author Ilya Kaltygin
+ */
+@Name("ru.job4j.auth.TokenVerify")
+@Label("Token Verify")
+public class TokenVerifyEvent extends AuthEvent {
+}
@@ -0,0 +1,14 @@
+package ru.job4j.auth.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * UserLookupEvent - загрузка пользователя при входе
+ *
+ * @author Ilya Kaltygin
+ */
+@Name("ru.job4j.auth.UserLookup")
+@Label("User Lookup")
+public class UserLookupEvent extends AuthEvent {
+}
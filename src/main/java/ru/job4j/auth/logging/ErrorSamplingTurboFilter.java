@@ -0,0 +1,140 @@
+package ru.job4j.auth.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ErrorSamplingTurboFilter - прореживает повторяющиеся сообщения уровня WARN и выше.
+ * Одинаковыми считаются сообщения одного логгера с одним шаблоном и одним классом исключения.
+ * В каждом окне первые burst сообщений пропускаются, из остальных пропускается каждое sampleRate-е.
+ * Фильтр срабатывает до создания события, поэтому отброшенное сообщение не форматируется и не попадает в очередь
+ *
+ * @author Ilya Kaltygin
+ */
+public class ErrorSamplingTurboFilter extends TurboFilter {
+
+    /**
+     * Количество сообщений, которые пропускаются в каждом окне без прореживания
+     */
+    private int burst = 10;
+
+    /**
+     * Длительность окна в миллисекундах
+     */
+    private long periodMs = 10_000;
+
+    /**
+     * Сверх burst пропускается одно сообщение из sampleRate
+     */
+    private int sampleRate = 100;
+
+    /**
+     * Максимальное количество отслеживаемых сообщений. При достижении удаляются только устаревшие окна,
+     * а если их нет, новые сообщения пропускаются без учета. Действующие счетчики не сбрасываются,
+     * иначе при шторме из многих разных сообщений прореживание отключалось бы
+     */
+    private int maxKeys = 1024;
+
+    /**
+     * Время, раньше которого не выполняется повторный поиск устаревших окон
+     */
+    private final AtomicLong nextEviction = new AtomicLong();
+
+    /**
+     * Счетчики сообщений по ключу
+     */
+    private final ConcurrentHashMap<Key, Window> windows = new ConcurrentHashMap<>();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level,
+                              String format, Object[] params, Throwable t) {
+        if (!isStarted() || level == null || !level.isGreaterOrEqual(Level.WARN) || format == null) {
+            return FilterReply.NEUTRAL;
+        }
+        long now = System.currentTimeMillis();
+        Key key = new Key(logger.getName(), format, t == null ? null : t.getClass());
+        Window window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= maxKeys && !evictExpired(now)) {
+                return FilterReply.NEUTRAL;
+            }
+            window = windows.computeIfAbsent(key, k -> new Window());
+        }
+        long count = window.increment(now, periodMs);
+        if (count <= burst || (count - burst) % sampleRate == 0) {
+            return FilterReply.NEUTRAL;
+        }
+        return FilterReply.DENY;
+    }
+
+    /**
+     * Удалить окна, которые не обновлялись дольше periodMs. Поиск выполняется не чаще раза в periodMs
+     *
+     * @param now текущее время
+     * @return true, если после удаления есть место для нового сообщения
+     */
+    private boolean evictExpired(long now) {
+        long next = nextEviction.get();
+        if (now >= next && nextEviction.compareAndSet(next, now + periodMs)) {
+            windows.values().removeIf(w -> w.isExpired(now, periodMs));
+        }
+        return windows.size() < maxKeys;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public void setPeriodMs(long periodMs) {
+        this.periodMs = periodMs;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Ключ сообщения
+     */
+    private record Key(String logger, String format, Class<?> error) {
+    }
+
+    /**
+     * Счетчик сообщений в текущем окне
+     */
+    private static final class Window {
+
+        private final AtomicLong start = new AtomicLong();
+
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * Учесть сообщение. Устаревшее окно сбрасывает тот поток, который первым его заметил
+         *
+         * @param now      текущее время
+         * @param periodMs длительность окна
+         * @return номер сообщения в окне, начиная с 1
+         */
+        long increment(long now, long periodMs) {
+            long windowStart = start.get();
+            if (now - windowStart >= periodMs && start.compareAndSet(windowStart, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet();
+        }
+
+        boolean isExpired(long now, long periodMs) {
+            return now - start.get() >= periodMs;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.job4j.auth.migration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * PersonPartitionMigrator - переносит пользователей из таблицы person в секционированную таблицу person_partitioned
+ * без остановки сервиса. Новые изменения в person переносит триггер person_partitioned_mirror,
+ * этот компонент небольшими пачками переносит уже существующие строки и сохраняет прогресс в person_partition_migration.
+ * Переносимые строки блокируются на время пачки (for share), поэтому удаление или изменение пользователя
+ * не может обогнать перенос его старой версии.
+ * Каждая пачка блокирует строку состояния (for update) и продолжает с сохраненного в ней last_id,
+ * поэтому узлы, запущенные с этим свойством одновременно, переносят пачки по очереди и не сбрасывают признак завершения.
+ * Пользователи без логина не помещаются в секционированную таблицу, пока они есть, перенос не завершается.
+ * После завершения переноса таблицы меняются местами changeset-ом 008 при следующем запуске Liquibase.
+ * Включается свойством person.partition-migration.enabled=true, работает только с PostgreSQL
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "person.partition-migration.enabled", havingValue = "true")
+public class PersonPartitionMigrator {
+
+    private static final String SELECT_STATE =
+            "select last_id from person_partition_migration where id = 1 and not done for update";
+
+    private static final String COUNT_NULL_LOGINS =
+            "select count(*) from person where login is null";
+
+    private static final String SELECT_BATCH_END =
+            "select max(id) from (select id from person where id > ? order by id limit ?) batch";
+
+    private static final String COPY_BATCH =
+            "with batch as (select id, login, password from person"
+                    + " where id > ? and id <= ? and login is not null for share)"
+                    + " insert into person_partitioned (id, login, password)"
+                    + " select id, login, password from batch on conflict (login) do nothing";
+
+    private static final String UPDATE_STATE =
+            "update person_partition_migration set last_id = ?, done = ? where id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Количество строк в одной пачке
+     */
+    private final int batchSize;
+
+    /**
+     * Пауза между пачками, чтобы перенос не мешал основной нагрузке
+     */
+    private final long pauseMs;
+
+    private volatile boolean running = true;
+
+    public PersonPartitionMigrator(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${person.partition-migration.batch-size:5000}") int batchSize,
+                                   @Value("${person.partition-migration.pause-ms:50}") long pauseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * Запустить перенос в фоновом потоке после старта приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::migrate, "person-partition-migrator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    private void migrate() {
+        try {
+            int nullLogins = countNullLogins();
+            if (nullLogins > 0) {
+                log.warn("Person partition migration: {} persons have no login, the migration will not finish"
+                        + " until they are fixed", nullLogins);
+            }
+            log.info("Person partition migration started");
+            while (running && Boolean.TRUE.equals(transactionTemplate.execute(status -> copyBatch()))) {
+                Thread.sleep(pauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Exception in the migrate() method", e);
+        }
+    }
+
+    /**
+     * Перенести следующую пачку строк и сохранить прогресс. Выполняется в транзакции под блокировкой строки состояния.
+     * Перенос отмечается завершенным, только если не осталось пользователей без логина
+     *
+     * @return true если перенос нужно продолжить
+     */
+    private boolean copyBatch() {
+        Integer lastId = jdbcTemplate.query(SELECT_STATE, rs -> rs.next() ? rs.getInt(1) : null);
+        if (lastId == null) {
+            log.info("Person partition migration is already done");
+            return false;
+        }
+        Integer batchEnd = jdbcTemplate.queryForObject(SELECT_BATCH_END, Integer.class, lastId, batchSize);
+        if (batchEnd == null) {
+            int nullLogins = countNullLogins();
+            if (nullLogins > 0) {
+                log.error("Person partition migration cannot finish: {} persons have no login and would be lost"
+                        + " after the tables are swapped. Set their logins or delete them and restart", nullLogins);
+                return false;
+            }
+            jdbcTemplate.update(UPDATE_STATE, lastId, true);
+            log.info("Person partition migration is done, tables will be swapped on the next Liquibase update");
+            return false;
+        }
+        int copied = jdbcTemplate.update(COPY_BATCH, lastId, batchEnd);
+        jdbcTemplate.update(UPDATE_STATE, batchEnd, false);
+        log.debug("Person partition migration: {} rows copied up to id {}", copied, batchEnd);
+        return true;
+    }
+
+    private int countNullLogins() {
+        Integer count = jdbcTemplate.queryForObject(COUNT_NULL_LOGINS, Integer.class);
+        return count == null ? 0 : count;
+    }
+}
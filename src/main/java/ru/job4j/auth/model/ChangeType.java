@@ -0,0 +1,12 @@
+package ru.job4j.auth.model;
+
+/**
+ * ChangeType - тип изменения пользователя в журнале изменений
+ *
+ * @author Ilya Kaltygin
+ */
+public enum ChangeType {
+    CREATE,
+    UPDATE,
+    DELETE
+}
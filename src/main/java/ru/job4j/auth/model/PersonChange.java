@@ -0,0 +1,45 @@
+package ru.job4j.auth.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * PersonChange - модель данных запись журнала изменений пользователей
+ *
+ * @author Ilya Kaltygin
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "person_change")
+public class PersonChange {
+
+    /**
+     * Порядковый номер изменения, монотонно возрастает
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long seq;
+
+    private int personId;
+
+    private String login;
+
+    @Enumerated(EnumType.STRING)
+    private ChangeType operation;
+
+    private LocalDateTime created;
+}
@@ -1,18 +1,36 @@
 package ru.job4j.auth.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.job4j.auth.model.Person;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 /**
- * PersonRepository - хранилище пользователей
+ * PersonRepository - хранилище пользователей.
+ * Таблица person может быть секционирована по хешу логина (changeset-ы 007 и 008),
+ * поэтому запросы по возможности содержат условие на логин: так PostgreSQL обращается только к одной секции.
+ * Поиск по идентификатору использует индексы по id в каждой секции
  *
  * @author Ilya Kaltygin
  */
 public interface PersonRepository extends CrudRepository<Person, Integer> {
 
+    /**
+     * Количество логинов, которые драйвер получает из базы данных за одно обращение
+     */
+    String LOGIN_FETCH_SIZE = "1000";
+
     /**
      * Найти всех пользователей в базе данных
      *
@@ -21,10 +39,78 @@ public interface PersonRepository extends CrudRepository<Person, Integer> {
     List<Person> findAll();
 
     /**
-     * Найти пользователя в базе данных по логину
+     * Найти пользователя в базе данных по логину вместе с ролями одним запросом.
+     * Используется при входе пользователя (UserDetailsServiceImpl)
      *
      * @param login логин
      * @return Optional.of(person) если пользователь найден, иначе Optional.empty()
      */
+    @EntityGraph(attributePaths = "roles")
     Optional<Person> findByLogin(String login);
+
+    /**
+     * Найти пользователя по идентификатору вместе с ролями одним запросом.
+     * Кеш пользователей отдает найденного пользователя и при поиске по логину, поэтому роли нужны и здесь
+     *
+     * @param id идентификатор
+     * @return Optional.of(person) если пользователь найден, иначе Optional.empty()
+     */
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    Optional<Person> findById(Integer id);
+
+    /**
+     * Проверить, существует ли пользователь с указанным логином. Использует уникальный индекс по логину
+     *
+     * @param login логин
+     * @return true если пользователь существует, иначе false
+     */
+    boolean existsByLogin(String login);
+
+    /**
+     * Прочитать логины всех пользователей без загрузки остальных полей.
+     * Логины читаются из курсора порциями по LOGIN_FETCH_SIZE и не собираются в памяти целиком.
+     * Вызывается в транзакции, поток нужно закрыть
+     *
+     * @return поток логинов
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = LOGIN_FETCH_SIZE))
+    @Query("select p.login from Person p")
+    Stream<String> streamAllLogins();
+
+    /**
+     * Обновить пароль пользователя по логину. Обращается только к секции с этим логином
+     *
+     * @param login    логин
+     * @param password новый пароль
+     * @return количество обновленных пользователей
+     */
+    @Transactional
+    @Modifying
+    @Query("update Person p set p.password = :password where p.login = :login")
+    int updatePasswordByLogin(@Param("login") String login, @Param("password") String password);
+
+    /**
+     * Удалить пользователя по идентификатору и логину. Обращается только к секции с этим логином
+     *
+     * @param id    идентификатор
+     * @param login логин
+     * @return количество удаленных пользователей
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Person p where p.id = :id and p.login = :login")
+    int deleteByIdAndLogin(@Param("id") int id, @Param("login") String login);
+
+    /**
+     * Удалить роли пользователя. После секционирования таблицы person внешнего ключа
+     * person_roles -> person нет, поэтому роли удаляются вместе с пользователем явно
+     *
+     * @param personId идентификатор пользователя
+     * @return количество удаленных связей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from person_roles where person_id = :personId", nativeQuery = true)
+    int deleteRolesByPersonId(@Param("personId") int personId);
 }
@@ -0,0 +1,22 @@
+package ru.job4j.auth.repository;
+
+import org.springframework.data.repository.CrudRepository;
+import ru.job4j.auth.model.Role;
+
+import java.util.Optional;
+
+/**
+ * RoleRepository - хранилище ролей пользователей
+ *
+ * @author Ilya Kaltygin
+ */
+public interface RoleRepository extends CrudRepository<Role, Integer> {
+
+    /**
+     * Найти роль по названию
+     *
+     * @param name название роли
+     * @return Optional.of(role) если роль найдена, иначе Optional.empty()
+     */
+    Optional<Role> findByName(String name);
+}
@@ -0,0 +1,362 @@
+package ru.job4j.auth.repository.embedded;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Repository;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.model.Role;
+import ru.job4j.auth.repository.PersonRepository;
+import ru.job4j.auth.repository.embedded.PersonLog.LogRecord;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * EmbeddedPersonRepository - хранилище пользователей без PostgreSQL, включается профилем embedded.
+ * Пользователи хранятся в памяти в индексах id -> запись и логин -> id и сохраняются в журнал PersonLog.
+ * Чтение не блокируется, изменения выполняются по одному под блокировкой и сначала дописываются в журнал.
+ * Журнал периодически сбрасывается на диск и сжимается, если актуальные записи занимают меньше половины его размера
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Repository
+@Profile("embedded")
+public class EmbeddedPersonRepository implements PersonRepository {
+
+    /**
+     * Журнал меньше этого размера не сжимается
+     */
+    private static final int MIN_COMPACTION_SIZE = 16 << 20;
+
+    private final IntObjectIndex<LogRecord> byId = new IntObjectIndex<>();
+
+    private final Map<String, Integer> byLogin = new ConcurrentHashMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final PersonLog personLog;
+
+    private final long maintenanceIntervalSeconds;
+
+    /**
+     * Сбрасывать журнал на диск после каждого изменения
+     */
+    private final boolean syncOnWrite;
+
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "embedded-person-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Следующий идентификатор, изменяется под блокировкой записи
+     */
+    private int nextId = 1;
+
+    /**
+     * Размер актуальных записей в журнале, изменяется под блокировкой записи
+     */
+    private long liveBytes;
+
+    public EmbeddedPersonRepository(@Value("${person.embedded.path:./data/person.log}") String path,
+                                    @Value("${person.embedded.maintenance-interval-seconds:60}") long maintenanceIntervalSeconds,
+                                    @Value("${person.embedded.sync-on-write:false}") boolean syncOnWrite) {
+        this.personLog = new PersonLog(Path.of(path));
+        this.maintenanceIntervalSeconds = maintenanceIntervalSeconds;
+        this.syncOnWrite = syncOnWrite;
+    }
+
+    /**
+     * Восстановить пользователей из журнала и запустить обслуживание журнала
+     */
+    @PostConstruct
+    public void open() {
+        writeLock.lock();
+        try {
+            personLog.open(this::apply);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Embedded person repository opened: {} persons", byId.size());
+        maintenance.scheduleWithFixedDelay(this::maintain,
+                maintenanceIntervalSeconds, maintenanceIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        maintenance.shutdownNow();
+        writeLock.lock();
+        try {
+            personLog.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Person> findAll() {
+        List<LogRecord> records = byId.values();
+        List<Person> result = new ArrayList<>(records.size());
+        for (LogRecord record : records) {
+            result.add(toPerson(record));
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<Person> findByLogin(String login) {
+        Integer id = byLogin.get(login);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public boolean existsByLogin(String login) {
+        return byLogin.containsKey(login);
+    }
+
+    @Override
+    public Stream<String> streamAllLogins() {
+        return byLogin.keySet().stream();
+    }
+
+    @Override
+    public int updatePasswordByLogin(String login, String password) {
+        writeLock.lock();
+        try {
+            Integer id = byLogin.get(login);
+            LogRecord current = id == null ? null : byId.get(id);
+            if (current == null) {
+                return 0;
+            }
+            write(new LogRecord(PersonLog.PUT, current.getId(), current.getLogin(), password,
+                    current.getRoleIds(), current.getRoleNames()));
+            return 1;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int deleteByIdAndLogin(int id, String login) {
+        writeLock.lock();
+        try {
+            LogRecord current = byId.get(id);
+            if (current == null || !current.getLogin().equals(login)) {
+                return 0;
+            }
+            write(LogRecord.delete(id));
+            return 1;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Роли хранятся в записи пользователя и удаляются вместе с ней
+     */
+    @Override
+    public int deleteRolesByPersonId(int personId) {
+        return 0;
+    }
+
+    @Override
+    public <S extends Person> S save(S entity) {
+        if (entity.getLogin() == null) {
+            throw new DataIntegrityViolationException("Login must not be null");
+        }
+        writeLock.lock();
+        try {
+            int id = entity.getId() == 0 ? nextId : entity.getId();
+            Integer owner = byLogin.get(entity.getLogin());
+            if (owner != null && owner != id) {
+                throw new DataIntegrityViolationException("Login already exists: " + entity.getLogin());
+            }
+            write(toRecord(id, entity));
+            entity.setId(id);
+            return entity;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public <S extends Person> Iterable<S> saveAll(Iterable<S> entities) {
+        List<S> result = new ArrayList<>();
+        for (S entity : entities) {
+            result.add(save(entity));
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<Person> findById(Integer id) {
+        LogRecord record = byId.get(id);
+        return record == null ? Optional.empty() : Optional.of(toPerson(record));
+    }
+
+    @Override
+    public boolean existsById(Integer id) {
+        return byId.get(id) != null;
+    }
+
+    @Override
+    public Iterable<Person> findAllById(Iterable<Integer> ids) {
+        List<Person> result = new ArrayList<>();
+        for (Integer id : ids) {
+            findById(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return byId.size();
+    }
+
+    @Override
+    public void deleteById(Integer id) {
+        if (!remove(id)) {
+            throw new EmptyResultDataAccessException(
+                    String.format("No %s entity with id %s exists!", Person.class, id), 1);
+        }
+    }
+
+    @Override
+    public void delete(Person entity) {
+        remove(entity.getId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Integer> ids) {
+        for (Integer id : ids) {
+            deleteById(id);
+        }
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Person> entities) {
+        for (Person entity : entities) {
+            delete(entity);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        for (LogRecord record : byId.values()) {
+            remove(record.getId());
+        }
+    }
+
+    /**
+     * Удалить пользователя
+     *
+     * @param id идентификатор
+     * @return true если пользователь был удален
+     */
+    private boolean remove(int id) {
+        writeLock.lock();
+        try {
+            if (byId.get(id) == null) {
+                return false;
+            }
+            write(LogRecord.delete(id));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Дописать запись в журнал и применить ее к индексам. Вызывается под блокировкой записи
+     */
+    private void write(LogRecord record) {
+        int size = personLog.append(record);
+        if (syncOnWrite) {
+            personLog.force();
+        }
+        apply(record.withSize(size));
+    }
+
+    /**
+     * Применить запись журнала к индексам. Вызывается под блокировкой записи
+     */
+    private void apply(LogRecord record) {
+        if (record.getType() == PersonLog.PUT) {
+            LogRecord previous = byId.put(record.getId(), record);
+            if (previous != null) {
+                liveBytes -= previous.getSize();
+                if (!previous.getLogin().equals(record.getLogin())) {
+                    byLogin.remove(previous.getLogin(), previous.getId());
+                }
+            }
+            byLogin.put(record.getLogin(), record.getId());
+            liveBytes += record.getSize();
+            nextId = Math.max(nextId, record.getId() + 1);
+        } else {
+            LogRecord previous = byId.remove(record.getId());
+            if (previous != null) {
+                liveBytes -= previous.getSize();
+                byLogin.remove(previous.getLogin(), previous.getId());
+            }
+        }
+    }
+
+    /**
+     * Сбросить журнал на диск и сжать его, если в нем больше половины устаревших записей
+     */
+    private void maintain() {
+        writeLock.lock();
+        try {
+            personLog.force();
+            if (personLog.size() > MIN_COMPACTION_SIZE && liveBytes * 2 < personLog.size()) {
+                int before = personLog.size();
+                personLog.compact(byId.values());
+                log.info("Person log compacted from {} to {} bytes", before, personLog.size());
+            }
+        } catch (Exception e) {
+            log.error("Exception in the maintain() method", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static LogRecord toRecord(int id, Person person) {
+        Set<Role> roles = person.getRoles();
+        int[] roleIds = new int[roles.size()];
+        String[] roleNames = new String[roles.size()];
+        int i = 0;
+        for (Role role : roles) {
+            roleIds[i] = role.getId();
+            roleNames[i] = role.getName();
+            i++;
+        }
+        return new LogRecord(PersonLog.PUT, id, person.getLogin(), person.getPassword(), roleIds, roleNames);
+    }
+
+    private static Person toPerson(LogRecord record) {
+        Set<Role> roles = new HashSet<>();
+        for (int i = 0; i < record.getRoleIds().length; i++) {
+            roles.add(new Role(record.getRoleIds()[i], record.getRoleNames()[i]));
+        }
+        return new Person(record.getId(), record.getLogin(), record.getPassword(), roles);
+    }
+}
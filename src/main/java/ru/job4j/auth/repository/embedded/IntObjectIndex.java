@@ -0,0 +1,225 @@
+package ru.job4j.auth.repository.embedded;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * IntObjectIndex - хеш-таблица с ключами int без упаковки в Integer (открытая адресация, линейное пробирование).
+ * Чтение выполняется без блокировки (оптимистичное чтение StampedLock), изменение - под блокировкой записи.
+ * Ключ 0 зарезервирован под пустую ячейку
+ *
+ * @param <V> тип значения
+ * @author Ilya Kaltygin
+ */
+public class IntObjectIndex<V> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Таблица заменяется целиком при расширении, поэтому читатель всегда видит согласованные массивы
+     */
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    private int size;
+
+    /**
+     * Найти значение по ключу
+     *
+     * @param key ключ, не 0
+     * @return значение или null
+     */
+    public V get(int key) {
+        long stamp = lock.tryOptimisticRead();
+        V value = table.get(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = table.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Положить значение
+     *
+     * @param key   ключ, не 0
+     * @param value значение
+     * @return предыдущее значение или null
+     */
+    public V put(int key, V value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        long stamp = lock.writeLock();
+        try {
+            if ((size + 1) * 2 > table.keys.length) {
+                table = table.resize();
+            }
+            V previous = table.put(key, value);
+            if (previous == null) {
+                size++;
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удалить значение
+     *
+     * @param key ключ
+     * @return удаленное значение или null
+     */
+    public V remove(int key) {
+        long stamp = lock.writeLock();
+        try {
+            V previous = table.remove(key);
+            if (previous != null) {
+                size--;
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return количество значений
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return копия всех значений
+     */
+    public List<V> values() {
+        long stamp = lock.readLock();
+        try {
+            return table.values(size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Удалить все значения
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private final class Table {
+
+        private final int[] keys;
+
+        private final Object[] values;
+
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V get(int key) {
+            for (int i = slot(key), probes = 0; probes < keys.length; i = (i + 1) & mask, probes++) {
+                int current = keys[i];
+                if (current == key) {
+                    return (V) values[i];
+                }
+                if (current == 0) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V put(int key, V value) {
+            int i = slot(key);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            V previous = (V) values[i];
+            values[i] = value;
+            keys[i] = key;
+            return previous;
+        }
+
+        /**
+         * Удаление со сдвигом следующих ключей, чтобы не нарушить цепочки пробирования
+         */
+        @SuppressWarnings("unchecked")
+        private V remove(int key) {
+            int i = slot(key);
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return null;
+                }
+                i = (i + 1) & mask;
+            }
+            V previous = (V) values[i];
+            int gap = i;
+            int next = (gap + 1) & mask;
+            while (keys[next] != 0) {
+                int home = slot(keys[next]);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = 0;
+            values[gap] = null;
+            return previous;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Table resize() {
+            Table resized = new Table(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    resized.put(keys[i], (V) values[i]);
+                }
+            }
+            return resized;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<V> values(int size) {
+            List<V> result = new ArrayList<>(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    result.add((V) values[i]);
+                }
+            }
+            return result;
+        }
+
+        private int slot(int key) {
+            return (key * 0x9E3779B9) & mask;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package ru.job4j.auth.repository.embedded;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * PersonLog - журнал пользователей только на дозапись в отображенном в память файле.
+ * Формат записи: длина тела (int), тело, CRC32 тела (int). Тело: тип (byte), id (int),
+ * для PUT - логин, пароль и роли. Нулевая длина означает конец журнала, она дописывается после каждой записи.
+ * При открытии журнал читается до первой поврежденной записи (оборванная запись при падении процесса),
+ * остаток файла обнуляется целиком: иначе после новой записи того же размера старые записи за ней
+ * снова оказались бы на границе записей и были бы прочитаны при следующем открытии.
+ * Класс не потокобезопасен, синхронизацию обеспечивает вызывающий
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+public class PersonLog implements AutoCloseable {
+
+    public static final byte PUT = 1;
+
+    public static final byte DELETE = 2;
+
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private static final int CRC_SIZE = Integer.BYTES;
+
+    private static final int MIN_CAPACITY = 1 << 20;
+
+    /**
+     * Блок нулей для обнуления хвоста журнала
+     */
+    private static final byte[] ZEROS = new byte[64 << 10];
+
+    private final Path path;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * Позиция следующей записи
+     */
+    private int position;
+
+    public PersonLog(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Открыть журнал и передать все целые записи в consumer в порядке записи
+     *
+     * @param consumer обработчик записей
+     */
+    public void open(Consumer<LogRecord> consumer) {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            map(Math.max(MIN_CAPACITY, Files.exists(path) ? Files.size(path) : 0));
+            position = 0;
+            while (true) {
+                LogRecord record = readAt(position);
+                if (record == null) {
+                    break;
+                }
+                consumer.accept(record);
+                position += record.getSize();
+            }
+            zeroTail();
+            log.info("Person log {} opened, {} bytes recovered", path, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Дописать запись
+     *
+     * @param record запись
+     * @return размер записи в журнале
+     */
+    public int append(LogRecord record) {
+        byte[] body = record.toBody();
+        int size = HEADER_SIZE + body.length + CRC_SIZE;
+        ensureCapacity(position + size + HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        buffer.putInt(position + HEADER_SIZE + body.length, (int) crc.getValue());
+        buffer.put(position + HEADER_SIZE, body);
+        buffer.putInt(position + size, 0);
+        buffer.putInt(position, body.length);
+        position += size;
+        return size;
+    }
+
+    /**
+     * Сбросить изменения на диск
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * @return размер журнала в байтах
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Переписать журнал, оставив только переданные записи. Новый файл подменяет старый атомарно
+     *
+     * @param live актуальные записи
+     */
+    public void compact(Collection<LogRecord> live) {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            List<byte[]> bodies = new ArrayList<>(live.size());
+            long total = HEADER_SIZE;
+            for (LogRecord record : live) {
+                byte[] body = record.toBody();
+                bodies.add(body);
+                total += HEADER_SIZE + body.length + CRC_SIZE;
+            }
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_CAPACITY, total));
+                for (byte[] body : bodies) {
+                    CRC32 crc = new CRC32();
+                    crc.update(body);
+                    target.putInt(body.length).put(body).putInt((int) crc.getValue());
+                }
+                target.force();
+            }
+            close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map(Math.max(MIN_CAPACITY, total));
+            position = (int) (total - HEADER_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Обнулить журнал от позиции следующей записи до конца файла
+     */
+    private void zeroTail() {
+        for (int offset = position; offset < buffer.capacity(); offset += ZEROS.length) {
+            buffer.put(offset, ZEROS, 0, Math.min(ZEROS.length, buffer.capacity() - offset));
+        }
+        buffer.force();
+    }
+
+    private void ensureCapacity(long required) {
+        if (required > buffer.capacity()) {
+            long capacity = buffer.capacity();
+            while (capacity < required) {
+                capacity *= 2;
+            }
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Person log is full: " + path);
+            }
+            try {
+                buffer.force();
+                map(capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void map(long capacity) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Прочитать запись по смещению
+     *
+     * @return запись или null, если журнал закончился или запись повреждена
+     */
+    private LogRecord readAt(int offset) {
+        if (offset + HEADER_SIZE > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || (long) offset + HEADER_SIZE + length + CRC_SIZE > buffer.capacity()) {
+            return null;
+        }
+        byte[] body = new byte[length];
+        buffer.get(offset + HEADER_SIZE, body);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(offset + HEADER_SIZE + length)) {
+            log.warn("Person log {} has a corrupted record at {}, the tail is discarded", path, offset);
+            return null;
+        }
+        return LogRecord.fromBody(body, HEADER_SIZE + length + CRC_SIZE);
+    }
+
+    /**
+     * Запись журнала
+     */
+    public static final class LogRecord {
+
+        private final byte type;
+
+        private final int id;
+
+        private final String login;
+
+        private final String password;
+
+        private final int[] roleIds;
+
+        private final String[] roleNames;
+
+        private final int size;
+
+        public LogRecord(byte type, int id, String login, String password, int[] roleIds, String[] roleNames) {
+            this(type, id, login, password, roleIds, roleNames, 0);
+        }
+
+        private LogRecord(byte type, int id, String login, String password,
+                          int[] roleIds, String[] roleNames, int size) {
+            this.type = type;
+            this.id = id;
+            this.login = login;
+            this.password = password;
+            this.roleIds = roleIds;
+            this.roleNames = roleNames;
+            this.size = size;
+        }
+
+        /**
+         * @param size размер записи в журнале
+         * @return копия записи с известным размером
+         */
+        public LogRecord withSize(int size) {
+            return new LogRecord(type, id, login, password, roleIds, roleNames, size);
+        }
+
+        public static LogRecord delete(int id) {
+            return new LogRecord(DELETE, id, null, null, new int[0], new String[0]);
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getLogin() {
+            return login;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public int[] getRoleIds() {
+            return roleIds;
+        }
+
+        public String[] getRoleNames() {
+            return roleNames;
+        }
+
+        /**
+         * @return размер записи в журнале, известен для прочитанных и дописанных записей
+         */
+        public int getSize() {
+            return size;
+        }
+
+        private byte[] toBody() {
+            byte[] loginBytes = bytes(login);
+            byte[] passwordBytes = bytes(password);
+            byte[][] names = new byte[roleNames.length][];
+            int length = Byte.BYTES + Integer.BYTES + stringSize(loginBytes) + stringSize(passwordBytes) + Integer.BYTES;
+            for (int i = 0; i < roleNames.length; i++) {
+                names[i] = bytes(roleNames[i]);
+                length += Integer.BYTES + stringSize(names[i]);
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            body.put(type).putInt(id);
+            putString(body, loginBytes);
+            putString(body, passwordBytes);
+            body.putInt(roleIds.length);
+            for (int i = 0; i < roleIds.length; i++) {
+                body.putInt(roleIds[i]);
+                putString(body, names[i]);
+            }
+            return body.array();
+        }
+
+        private static LogRecord fromBody(byte[] bytes, int size) {
+            ByteBuffer body = ByteBuffer.wrap(bytes);
+            byte type = body.get();
+            int id = body.getInt();
+            String login = getString(body);
+            String password = getString(body);
+            int roles = body.getInt();
+            int[] roleIds = new int[roles];
+            String[] roleNames = new String[roles];
+            for (int i = 0; i < roles; i++) {
+                roleIds[i] = body.getInt();
+                roleNames[i] = getString(body);
+            }
+            return new LogRecord(type, id, login, password, roleIds, roleNames, size);
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static int stringSize(byte[] value) {
+            return Integer.BYTES + (value == null ? 0 : value.length);
+        }
+
+        private static void putString(ByteBuffer body, byte[] value) {
+            if (value == null) {
+                body.putInt(-1);
+            } else {
+                body.putInt(value.length).put(value);
+            }
+        }
+
+        private static String getString(ByteBuffer body) {
+            int length = body.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] value = new byte[length];
+            body.get(value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+}
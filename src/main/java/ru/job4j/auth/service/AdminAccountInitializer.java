@@ -0,0 +1,122 @@
+package ru.job4j.auth.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.job4j.auth.cache.PersonInvalidationBus;
+import ru.job4j.auth.model.ChangeType;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.model.Role;
+import ru.job4j.auth.repository.PersonRepository;
+import ru.job4j.auth.repository.RoleRepository;
+
+import java.util.Optional;
+
+/**
+ * AdminAccountInitializer - создает или обновляет учетную запись администратора при старте приложения.
+ * Пароли в начальных данных (002_dml_insert_person.sql) не захешированы, и BCrypt их не принимает,
+ * поэтому пароль администратора задается свойством person.admin.password и сохраняется в виде хеша BCrypt.
+ * Если свойство не задано, учетная запись не изменяется
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Component
+public class AdminAccountInitializer {
+
+    private static final String USER_ROLE = "ROLE_USER";
+
+    private static final String ADMIN_ROLE = "ROLE_ADMIN";
+
+    private final PersonRepository personRepository;
+
+    private final RoleRepository roleRepository;
+
+    private final BCryptPasswordEncoder passwordEncoder;
+
+    private final PersonChangeFeed changeFeed;
+
+    private final PersonInvalidationBus invalidationBus;
+
+    private final LoginBloomFilter loginFilter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final String login;
+
+    private final String password;
+
+    public AdminAccountInitializer(PersonRepository personRepository,
+                                   RoleRepository roleRepository,
+                                   BCryptPasswordEncoder passwordEncoder,
+                                   PersonChangeFeed changeFeed,
+                                   PersonInvalidationBus invalidationBus,
+                                   LoginBloomFilter loginFilter,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${person.admin.login:parsentev}") String login,
+                                   @Value("${person.admin.password:}") String password) {
+        this.personRepository = personRepository;
+        this.roleRepository = roleRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.changeFeed = changeFeed;
+        this.invalidationBus = invalidationBus;
+        this.loginFilter = loginFilter;
+        this.transactionTemplate = transactionTemplate;
+        this.login = login;
+        this.password = password;
+    }
+
+    /**
+     * Создать администратора или обновить его пароль и роли, если они не совпадают с настройками
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (password.isBlank()) {
+            log.warn("person.admin.password is not set, admin account {} is left unchanged", login);
+            return;
+        }
+        try {
+            Person admin = transactionTemplate.execute(status -> initAdmin());
+            if (admin != null) {
+                invalidationBus.publish(admin.getId());
+                loginFilter.add(admin.getLogin());
+                log.info("Admin account {} is initialized", login);
+            }
+        } catch (Exception e) {
+            log.error("Exception in the init() method", e);
+        }
+    }
+
+    /**
+     * Выполняется в транзакции
+     *
+     * @return администратор, если он создан или изменен, иначе null
+     */
+    private Person initAdmin() {
+        Role userRole = roleRepository.findByName(USER_ROLE).orElseThrow();
+        Role adminRole = roleRepository.findByName(ADMIN_ROLE).orElseThrow();
+        Optional<Person> existing = personRepository.findByLogin(login);
+        Person admin = existing.orElseGet(() -> Person.builder().login(login).build());
+        boolean passwordMatches = admin.getPassword() != null
+                && admin.getPassword().startsWith("$2")
+                && passwordEncoder.matches(password, admin.getPassword());
+        if (passwordMatches && admin.getRoles().contains(adminRole)) {
+            return null;
+        }
+        if (!passwordMatches) {
+            admin.setPassword(passwordEncoder.encode(password));
+        }
+        admin.getRoles().add(userRole);
+        admin.getRoles().add(adminRole);
+        Person saved = personRepository.save(admin);
+        changeFeed.record(saved, existing.isPresent() ? ChangeType.UPDATE : ChangeType.CREATE);
+        if (existing.isEmpty()) {
+            invalidationBus.publishLogin(saved.getLogin());
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,200 @@
+package ru.job4j.auth.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * LoginBloomFilter - считающий фильтр Блума по логинам всех пользователей.
+ * Позволяет ответить "логин точно свободен" без обращения к базе данных.
+ * Вместо битов используются байтовые счетчики, поэтому логин можно удалить из фильтра.
+ * Логины, созданные на других узлах, добавляются через PersonInvalidationBus.
+ * Если сообщения могли потеряться, фильтр перестраивается, и пока он не готов, логин проверяется в базе данных
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Component
+public class LoginBloomFilter {
+
+    /**
+     * Максимальное значение счетчика. Переполненный счетчик больше не уменьшается
+     */
+    private static final int MAX_COUNT = 0xFF;
+
+    /**
+     * Счетчики фильтра. При перестроении массив заменяется целиком
+     */
+    private volatile byte[] counters;
+
+    /**
+     * Количество хеш-функций
+     */
+    private final int hashes;
+
+    /**
+     * Признак того, что фильтр заполнен логинами из базы данных
+     */
+    private volatile boolean ready;
+
+    /**
+     * Хеши логинов, добавленных во время перестроения фильтра, null если фильтр не перестраивается
+     */
+    private List<Long> addedDuringRebuild;
+
+    public LoginBloomFilter(@Value("${person.login-filter.expected-insertions:1000000}") int expectedInsertions,
+                            @Value("${person.login-filter.fpp:0.01}") double fpp) {
+        int size = (int) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.counters = new byte[Math.max(size, Byte.SIZE)];
+        this.hashes = Math.max(1, (int) Math.round((double) counters.length / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Построить фильтр заново. Пока строится новый массив счетчиков, фильтр не используется.
+     * Логины читаются из потока по одному и не собираются в памяти, поток закрывается после чтения.
+     * Логины, добавленные за это время, переносятся в новый массив
+     *
+     * @param logins открытие потока логинов всех пользователей
+     */
+    public void rebuild(Supplier<Stream<String>> logins) {
+        synchronized (this) {
+            ready = false;
+            addedDuringRebuild = new ArrayList<>();
+        }
+        byte[] rebuilt = new byte[counters.length];
+        try {
+            long count = 0;
+            try (Stream<String> all = logins.get()) {
+                Iterator<String> iterator = all.iterator();
+                while (iterator.hasNext()) {
+                    increment(rebuilt, hash(iterator.next()));
+                    count++;
+                }
+            }
+            synchronized (this) {
+                addedDuringRebuild.forEach(hash -> increment(rebuilt, hash));
+                counters = rebuilt;
+                ready = true;
+                log.info("Login filter is built: {} logins, {} counters, {} hashes", count, rebuilt.length, hashes);
+            }
+        } finally {
+            synchronized (this) {
+                addedDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * @return true если фильтр заполнен и ему можно доверять
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Добавить логин в фильтр
+     *
+     * @param login логин
+     */
+    public void add(String login) {
+        addHash(hash(login));
+    }
+
+    /**
+     * Добавить логин в фильтр по его хешу. Другие узлы передают хеш вместо логина,
+     * чтобы размер сообщения не зависел от длины логина
+     *
+     * @param hash хеш логина, см. hash(String)
+     */
+    public synchronized void addHash(long hash) {
+        increment(counters, hash);
+        if (addedDuringRebuild != null) {
+            addedDuringRebuild.add(hash);
+        }
+    }
+
+    /**
+     * Удалить логин из фильтра. До заполнения фильтра удаление игнорируется,
+     * иначе можно уменьшить счетчик, который еще не был увеличен
+     *
+     * @param login логин
+     */
+    public synchronized void remove(String login) {
+        if (!ready) {
+            return;
+        }
+        byte[] current = counters;
+        long hash = hash(login);
+        for (int i = 0; i < hashes; i++) {
+            int index = index(hash, i, current.length);
+            int count = current[index] & MAX_COUNT;
+            if (count > 0 && count < MAX_COUNT) {
+                current[index] = (byte) (count - 1);
+            }
+        }
+    }
+
+    /**
+     * Проверить, может ли логин присутствовать в базе данных.
+     * Чтение выполняется без блокировки: логин, добавленный конкурентно, может быть еще не виден,
+     * но такую регистрацию все равно отклонит уникальный индекс
+     *
+     * @param login логин
+     * @return false если логин точно отсутствует, true если логин возможно занят
+     */
+    public boolean mightContain(String login) {
+        byte[] current = counters;
+        long hash = hash(login);
+        for (int i = 0; i < hashes; i++) {
+            if (current[index(hash, i, current.length)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Увеличить счетчики логина. Вызывается под блокировкой фильтра или для еще не опубликованного массива
+     */
+    private void increment(byte[] target, long hash) {
+        for (int i = 0; i < hashes; i++) {
+            int index = index(hash, i, target.length);
+            int count = target[index] & MAX_COUNT;
+            if (count < MAX_COUNT) {
+                target[index] = (byte) (count + 1);
+            }
+        }
+    }
+
+    /**
+     * Индекс счетчика для i-й хеш-функции (двойное хеширование Кирша-Митценмахера)
+     */
+    private int index(long hash, int i, int length) {
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (combined & Integer.MAX_VALUE) % length;
+    }
+
+    /**
+     * 64-битный хеш FNV-1a по символам логина с перемешиванием fmix64. Одинаков на всех узлах
+     *
+     * @param login логин
+     * @return хеш логина
+     */
+    public static long hash(String login) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < login.length(); i++) {
+            hash ^= login.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
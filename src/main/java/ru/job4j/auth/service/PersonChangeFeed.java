@@ -0,0 +1,266 @@
+package ru.job4j.auth.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.job4j.auth.model.ChangeType;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.model.PersonChange;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PersonChangeFeed - журнал изменений пользователей и его рассылка подписчикам через Server-Sent Events.
+ * Изменение записывается в той же транзакции, что и само изменение пользователя.
+ * Подписчики читают журнал из таблицы, поэтому получают изменения, сделанные на любом узле.
+ * Перед вставкой блокируется строка person_change_lock (for update), блокировка держится до конца транзакции.
+ * Поэтому номер bigserial выдается только после фиксации предыдущей записи, и запись с меньшим номером
+ * не может стать видна позже записи с большим, а курсор подписчика не перескакивает изменения.
+ * Время изменения берется из базы данных, а не из часов узла
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+@Service
+public class PersonChangeFeed {
+
+    /**
+     * Максимальное количество изменений в одном ответе
+     */
+    public static final int PAGE_SIZE = 500;
+
+    /**
+     * Время жизни подписки, после него клиент переподключается с заголовком Last-Event-ID
+     */
+    private static final long EMITTER_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    private static final String LOCK = "select id from person_change_lock where id = 1 for update";
+
+    private static final String INSERT =
+            "insert into person_change (person_id, login, operation, created) values (?, ?, ?, current_timestamp)";
+
+    private static final String SELECT_SINCE =
+            "select seq, person_id, login, operation, created from person_change where seq > ? order by seq limit ?";
+
+    private static final String SELECT_MAX_SEQ = "select coalesce(max(seq), 0) from person_change";
+
+    private static final RowMapper<PersonChange> CHANGE_MAPPER = (rs, rowNum) -> PersonChange.builder()
+            .seq(rs.getLong("seq"))
+            .personId(rs.getInt("person_id"))
+            .login(rs.getString("login"))
+            .operation(ChangeType.valueOf(rs.getString("operation")))
+            .created(rs.getTimestamp("created").toLocalDateTime())
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long pollIntervalMs;
+
+    private final int maxSubscribers;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Таймер проверки новых записей в журнале
+     */
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "person-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Потоки отправки. У подписчика одновременно выполняется не больше одной отправки,
+     * поэтому медленный клиент занимает только свой поток и не задерживает остальных
+     */
+    private final ThreadPoolExecutor senders;
+
+    public PersonChangeFeed(JdbcTemplate jdbcTemplate,
+                            @Value("${person.change-feed.poll-interval-ms:500}") long pollIntervalMs,
+                            @Value("${person.change-feed.max-subscribers:256}") int maxSubscribers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollIntervalMs = pollIntervalMs;
+        this.maxSubscribers = maxSubscribers;
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(0, maxSubscribers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "person-change-feed-sender-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        poller.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Записать изменение пользователя в журнал. Вызывается в транзакции изменения пользователя,
+     * ошибка записи откатывает и само изменение. Записи в журнал выполняются по очереди до фиксации транзакции
+     *
+     * @param person пользователь
+     * @param type   тип изменения
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Person person, ChangeType type) {
+        jdbcTemplate.query(LOCK, rs -> null);
+        jdbcTemplate.update(INSERT, person.getId(), person.getLogin(), type.name());
+    }
+
+    /**
+     * Найти изменения с номером больше указанного, не более PAGE_SIZE
+     *
+     * @param since номер последнего полученного изменения
+     * @return список изменений в порядке возрастания номера
+     */
+    public List<PersonChange> findSince(long since) {
+        return jdbcTemplate.query(SELECT_SINCE, CHANGE_MAPPER, since, PAGE_SIZE);
+    }
+
+    /**
+     * Подписаться на изменения. Сначала отправляются изменения с номером больше since, затем новые
+     *
+     * @param since номер последнего полученного изменения
+     * @return поток событий, id события равен номеру изменения,
+     * или Optional.empty(), если достигнуто максимальное количество подписчиков
+     */
+    public Optional<SseEmitter> subscribe(long since) {
+        if (subscribers.size() >= maxSubscribers) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT);
+        Subscriber subscriber = new Subscriber(emitter, since);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscriber.close());
+        subscribers.add(subscriber);
+        subscriber.schedule();
+        return Optional.of(emitter);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+
+    /**
+     * Проверить журнал и запустить отправку подписчикам, которые отстали от последней записи.
+     * Одним запросом на все подписки, журнал читает только отставший подписчик
+     */
+    private void poll() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            Long head = jdbcTemplate.queryForObject(SELECT_MAX_SEQ, Long.class);
+            for (Subscriber subscriber : subscribers) {
+                if (head != null && subscriber.cursor < head) {
+                    subscriber.schedule();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Exception in the poll() method", e);
+        }
+    }
+
+    /**
+     * Подписчик на изменения. Курсор изменяется только потоком отправки
+     */
+    private class Subscriber {
+
+        private final SseEmitter emitter;
+
+        /**
+         * Номер последнего отправленного изменения
+         */
+        private volatile long cursor;
+
+        /**
+         * Признак запущенной отправки
+         */
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        private volatile boolean active = true;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Запустить отправку, если она еще не запущена. Если потоков нет, отправка повторится на следующей проверке
+         */
+        void schedule() {
+            if (active && running.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    running.set(false);
+                }
+            }
+        }
+
+        /**
+         * Отправить все изменения после курсора постранично
+         */
+        private void drain() {
+            try {
+                List<PersonChange> page;
+                do {
+                    page = findSince(cursor);
+                    for (PersonChange change : page) {
+                        if (!send(change)) {
+                            return;
+                        }
+                        cursor = change.getSeq();
+                    }
+                } while (page.size() == PAGE_SIZE && active);
+            } catch (Exception e) {
+                log.error("Exception in the drain() method", e);
+            } finally {
+                running.set(false);
+            }
+        }
+
+        private boolean send(PersonChange change) {
+            if (!active) {
+                return false;
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(change.getSeq()))
+                        .name(change.getOperation().name())
+                        .data(change));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                close();
+                return false;
+            }
+        }
+
+        void close() {
+            active = false;
+            subscribers.remove(this);
+        }
+    }
+}
@@ -36,6 +36,14 @@ public interface PersonService {
      */
     Optional<PersonDTO> findByLogin(String login);
 
+    /**
+     * Проверить, свободен ли логин. Если логина точно нет в фильтре Блума, база данных не запрашивается
+     *
+     * @param login логин
+     * @return true если логин свободен, иначе false
+     */
+    boolean isLoginAvailable(String login);
+
     /**
      * Хешировать пароль пользователя и сохранить пользователя в базу данных
      *
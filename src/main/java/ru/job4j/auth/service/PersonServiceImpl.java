@@ -3,15 +3,26 @@ package ru.job4j.auth.service;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.job4j.auth.cache.PersonCache;
+import ru.job4j.auth.cache.PersonInvalidationBus;
 import ru.job4j.auth.dto.PersonDTO;
+import ru.job4j.auth.jfr.PersonServiceEvent;
+import ru.job4j.auth.model.ChangeType;
 import ru.job4j.auth.model.Person;
+import ru.job4j.auth.model.Role;
 import ru.job4j.auth.repository.PersonRepository;
+import ru.job4j.auth.repository.RoleRepository;
 
 import javax.swing.text.html.Option;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -24,13 +35,57 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class PersonServiceImpl implements PersonService {
 
+    /**
+     * Роль, которая назначается новым пользователям
+     */
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
     /**
      * Хранилище пользователей
      */
     private final PersonRepository personRepository;
 
+    /**
+     * Хранилище ролей
+     */
+    private final RoleRepository roleRepository;
+
     private final BCryptPasswordEncoder passwordEncoder;
 
+    /**
+     * Фильтр Блума по логинам пользователей
+     */
+    private final LoginBloomFilter loginFilter;
+
+    /**
+     * Журнал изменений пользователей
+     */
+    private final PersonChangeFeed changeFeed;
+
+    /**
+     * Локальный кеш пользователей
+     */
+    private final PersonCache personCache;
+
+    /**
+     * Шина удаления пользователей из кешей всех узлов
+     */
+    private final PersonInvalidationBus invalidationBus;
+
+    /**
+     * Транзакция изменения пользователя вместе с записью в журнал изменений
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Заполнить фильтр логинов после старта приложения, когда схема базы данных уже применена.
+     * Логины читаются потоком в транзакции, поэтому драйвер получает их из курсора порциями
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initLoginFilter() {
+        transactionTemplate.executeWithoutResult(status -> loginFilter.rebuild(personRepository::streamAllLogins));
+    }
+
     /**
      * Найти всех пользователей в базе данных
      *
@@ -38,9 +93,13 @@ public class PersonServiceImpl implements PersonService {
      */
     @Override
     public List<PersonDTO> findAll() {
-        return personRepository.findAll().stream()
+        PersonServiceEvent event = new PersonServiceEvent("findAll");
+        event.begin();
+        List<PersonDTO> result = personRepository.findAll().stream()
                 .map(p -> new ModelMapper().map(p, PersonDTO.class))
                 .collect(Collectors.toList());
+        event.commit(null, "found");
+        return result;
     }
 
     /**
@@ -51,8 +110,12 @@ public class PersonServiceImpl implements PersonService {
      */
     @Override
     public Optional<PersonDTO> findById(int id) {
-        return personRepository.findById(id)
+        PersonServiceEvent event = new PersonServiceEvent("findById");
+        event.begin();
+        Optional<PersonDTO> result = personCache.findById(id)
                 .map(p -> new ModelMapper().map(p, PersonDTO.class));
+        event.commit(result.map(PersonDTO::getLogin).orElse(null), result.isPresent() ? "found" : "not-found");
+        return result;
     }
 
     /**
@@ -63,8 +126,32 @@ public class PersonServiceImpl implements PersonService {
      */
     @Override
     public Optional<PersonDTO> findByLogin(String login) {
-        return personRepository.findByLogin(login)
+        PersonServiceEvent event = new PersonServiceEvent("findByLogin");
+        event.begin();
+        Optional<PersonDTO> result = personCache.findByLogin(login)
                 .map(p -> new ModelMapper().map(p, PersonDTO.class));
+        event.commit(login, result.isPresent() ? "found" : "not-found");
+        return result;
+    }
+
+    /**
+     * Проверить, свободен ли логин. Если логина точно нет в фильтре Блума, база данных не запрашивается.
+     * Фильтр получает логины, созданные на других узлах, через PersonInvalidationBus
+     *
+     * @param login логин
+     * @return true если логин свободен, иначе false
+     */
+    @Override
+    public boolean isLoginAvailable(String login) {
+        PersonServiceEvent event = new PersonServiceEvent("isLoginAvailable");
+        event.begin();
+        if (loginFilter.isReady() && !loginFilter.mightContain(login)) {
+            event.commit(login, "filtered");
+            return true;
+        }
+        boolean result = !personRepository.existsByLogin(login);
+        event.commit(login, result ? "available" : "taken");
+        return result;
     }
 
     /**
@@ -75,16 +162,26 @@ public class PersonServiceImpl implements PersonService {
      */
     @Override
     public Optional<Person> signUp(PersonDTO personDTO) {
+        PersonServiceEvent event = new PersonServiceEvent("signUp");
+        event.begin();
         Optional<Person> result = Optional.empty();
         try {
             var person = Person.builder()
                     .login(personDTO.getLogin())
                     .password(passwordEncoder.encode(personDTO.getPassword()))
+                    .roles(defaultRoles())
                     .build();
-            result = Optional.of(personRepository.save(person));
+            result = Optional.ofNullable(transactionTemplate.execute(status -> {
+                Person saved = personRepository.save(person);
+                changeFeed.record(saved, ChangeType.CREATE);
+                invalidationBus.publishLogin(saved.getLogin());
+                return saved;
+            }));
+            loginFilter.add(person.getLogin());
         } catch (Exception e) {
             log.error("Exception in the ignUp(PersonDTO personDTO) method", e);
         }
+        event.commit(personDTO.getLogin(), result.isPresent() ? "created" : "failed");
         return result;
     }
 
@@ -96,56 +193,75 @@ public class PersonServiceImpl implements PersonService {
      */
     @Override
     public Optional<Person> save(PersonDTO personDTO) {
+        PersonServiceEvent event = new PersonServiceEvent("save");
+        event.begin();
         Optional<Person> result = Optional.empty();
         var person = Person.builder()
                 .login(personDTO.getLogin())
                 .password(personDTO.getPassword())
+                .roles(defaultRoles())
                 .build();
         try {
-            personRepository.save(person);
+            transactionTemplate.executeWithoutResult(status -> {
+                personRepository.save(person);
+                changeFeed.record(person, ChangeType.CREATE);
+                invalidationBus.publishLogin(person.getLogin());
+            });
+            loginFilter.add(person.getLogin());
             result = Optional.of(person);
         } catch (Exception e) {
             log.error("Exception in the save(PersonDTO personDTO) method", e);
         }
+        event.commit(personDTO.getLogin(), result.isPresent() ? "created" : "failed");
         return result;
     }
 
     /**
-     * Обновить пользователя в базе данных
+     * Обновить пользователя в базе данных. Пользователь ищется и обновляется по логину
      *
      * @param personDTO объект типа PersonDTO
      * @return true если пользователь успешно обновлен, иначе false
      */
     @Override
     public boolean update(PersonDTO personDTO) {
-        boolean result = false;
-        if (personRepository.findByLogin(personDTO.getLogin()).isPresent()) {
-            var person = Person.builder()
-                    .login(personDTO.getLogin())
-                    .password(personDTO.getPassword())
-                    .build();
-            personRepository.save(person);
-            result = true;
-        }
+        PersonServiceEvent event = new PersonServiceEvent("update");
+        event.begin();
+        boolean result = updateByLogin(personDTO);
+        event.commit(personDTO.getLogin(), result ? "updated" : "not-found");
         return result;
 
     }
 
     /**
-     * Удалить пользователя из базы данных
+     * Удалить пользователя из базы данных. Пользователь и его роли удаляются запросами с условием на логин,
+     * поэтому обращаются только к одной секции таблицы person
      *
      * @param id идентификатор пользователя
      * @return true если пользователь успешно удален, иначе false
      */
     @Override
     public boolean delete(int id) {
-        boolean result = false;
-        if (personRepository.existsById(id)) {
-            var person = new Person();
-            person.setId(id);
-            personRepository.delete(person);
-            result = true;
+        PersonServiceEvent event = new PersonServiceEvent("delete");
+        event.begin();
+        Optional<Person> deleted = transactionTemplate.execute(status -> {
+            var optionalPerson = personRepository.findById(id);
+            if (optionalPerson.isEmpty()) {
+                return optionalPerson;
+            }
+            personRepository.deleteRolesByPersonId(id);
+            if (personRepository.deleteByIdAndLogin(id, optionalPerson.get().getLogin()) == 0) {
+                status.setRollbackOnly();
+                return Optional.<Person>empty();
+            }
+            changeFeed.record(optionalPerson.get(), ChangeType.DELETE);
+            return optionalPerson;
+        });
+        boolean result = deleted != null && deleted.isPresent();
+        if (result) {
+            invalidationBus.publish(id);
+            loginFilter.remove(deleted.get().getLogin());
         }
+        event.commit(result ? deleted.get().getLogin() : null, result ? "deleted" : "not-found");
         return result;
     }
 
@@ -157,13 +273,45 @@ public class PersonServiceImpl implements PersonService {
      */
     @Override
     public boolean updatePassword(PersonDTO personDTO) {
-        boolean result = false;
-        var optionalPerson = personRepository.findByLogin(personDTO.getLogin());
-        if (optionalPerson.isPresent()) {
-            optionalPerson.get().setPassword(personDTO.getPassword());
-            personRepository.save(optionalPerson.get());
-            result = true;
-        }
+        PersonServiceEvent event = new PersonServiceEvent("updatePassword");
+        event.begin();
+        boolean result = updateByLogin(personDTO);
+        event.commit(personDTO.getLogin(), result ? "updated" : "not-found");
         return result;
     }
+
+    /**
+     * Обновить пароль пользователя по логину и записать изменение в журнал в одной транзакции.
+     * Запросы содержат условие на логин, поэтому обращаются только к одной секции таблицы person
+     *
+     * @param personDTO объект типа PersonDTO
+     * @return true если пользователь успешно обновлен, иначе false
+     */
+    private boolean updateByLogin(PersonDTO personDTO) {
+        Person updated = transactionTemplate.execute(status -> {
+            var optionalPerson = personRepository.findByLogin(personDTO.getLogin());
+            if (optionalPerson.isEmpty()
+                    || personRepository.updatePasswordByLogin(personDTO.getLogin(), personDTO.getPassword()) == 0) {
+                return null;
+            }
+            changeFeed.record(optionalPerson.get(), ChangeType.UPDATE);
+            return optionalPerson.get();
+        });
+        if (updated == null) {
+            return false;
+        }
+        invalidationBus.publish(updated.getId());
+        return true;
+    }
+
+    /**
+     * Роли, назначаемые новому пользователю
+     *
+     * @return изменяемое множество ролей
+     */
+    private Set<Role> defaultRoles() {
+        Set<Role> roles = new HashSet<>();
+        roleRepository.findByName(DEFAULT_ROLE).ifPresent(roles::add);
+        return roles;
+    }
 }
@@ -6,12 +6,15 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import ru.job4j.auth.cache.PersonCache;
+import ru.job4j.auth.filter.RoleAuthorities;
+import ru.job4j.auth.jfr.UserLookupEvent;
 import ru.job4j.auth.model.Person;
-import ru.job4j.auth.repository.PersonRepository;
+import ru.job4j.auth.model.Role;
+import ru.job4j.auth.timing.ServerTiming;
 
 import java.util.Optional;
-
-import static java.util.Collections.emptyList;
+import java.util.stream.Collectors;
 
 /**
  * UserDetailsServiceImpl - сервис загружает в SecurityContextHolder детали авторизованного пользователя
@@ -23,16 +26,25 @@ import static java.util.Collections.emptyList;
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     /**
-     * Хранилище пользователей
+     * Кеш пользователей
      */
-    private final PersonRepository personRepository;
+    private final PersonCache personCache;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        Optional<Person> user = personRepository.findByLogin(username);
+        UserLookupEvent event = new UserLookupEvent();
+        event.begin();
+        long start = ServerTiming.start();
+        Optional<Person> user = personCache.findByLogin(username);
+        ServerTiming.stop(ServerTiming.Phase.USER_LOOKUP, start);
+        event.commit(username, user.isPresent() ? "found" : "not-found");
         if (user.isEmpty()) {
             throw new UsernameNotFoundException(username);
         }
-        return new User(user.get().getLogin(), user.get().getPassword(), emptyList());
+        var authorities = user.get().getRoles().stream()
+                .map(Role::getName)
+                .map(RoleAuthorities::byName)
+                .collect(Collectors.toList());
+        return new User(user.get().getLogin(), user.get().getPassword(), authorities);
     }
 }
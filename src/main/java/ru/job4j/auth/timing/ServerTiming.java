@@ -0,0 +1,151 @@
+package ru.job4j.auth.timing;
+
+/**
+ * ServerTiming - накопитель длительностей фаз обработки текущего запроса.
+ * Один экземпляр на поток переиспользуется между запросами, поэтому запись фаз не создает объектов.
+ * Если запрос не измеряется (заголовок Server-Timing выключен), start() возвращает 0 и stop() ничего не делает
+ *
+ * @author Ilya Kaltygin
+ */
+public final class ServerTiming {
+
+    /**
+     * Фазы обработки запроса
+     */
+    public enum Phase {
+        JWT("jwt"),
+        CREDENTIALS("creds"),
+        USER_LOOKUP("user"),
+        BCRYPT("bcrypt"),
+        DB("db"),
+        JSON("json");
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final long NANOS_IN_MICRO = 1_000L;
+
+    private static final long MICROS_IN_MILLI = 1_000L;
+
+    /**
+     * Накопитель потока, переиспользуется между запросами
+     */
+    private static final ThreadLocal<ServerTiming> POOL = ThreadLocal.withInitial(ServerTiming::new);
+
+    /**
+     * Накопитель запроса, который сейчас выполняется в потоке
+     */
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private final long[] nanos = new long[PHASES.length];
+
+    private final int[] counts = new int[PHASES.length];
+
+    private long startNanos;
+
+    private ServerTiming() {
+    }
+
+    /**
+     * Начать измерение запроса в текущем потоке
+     *
+     * @return накопитель запроса
+     */
+    public static ServerTiming begin() {
+        ServerTiming timing = POOL.get();
+        timing.reset();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    /**
+     * Закончить измерение запроса в текущем потоке
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Начать фазу
+     *
+     * @return время начала фазы или 0, если запрос не измеряется
+     */
+    public static long start() {
+        return CURRENT.get() == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Закончить фазу
+     *
+     * @param phase фаза
+     * @param start значение, полученное от start()
+     */
+    public static void stop(Phase phase, long start) {
+        if (start == 0L) {
+            return;
+        }
+        ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            timing.nanos[phase.ordinal()] += System.nanoTime() - start;
+            timing.counts[phase.ordinal()]++;
+        }
+    }
+
+    /**
+     * @return длительность запроса от begin() в наносекундах
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Сформировать значение заголовка Server-Timing, например "jwt;dur=0.412, db;dur=1.730, total;dur=3.020"
+     *
+     * @return значение заголовка
+     */
+    public String toHeader() {
+        StringBuilder sb = new StringBuilder(128);
+        for (Phase phase : PHASES) {
+            if (counts[phase.ordinal()] > 0) {
+                append(sb, phase.getMetricName(), nanos[phase.ordinal()]);
+                sb.append(", ");
+            }
+        }
+        append(sb, "total", elapsedNanos());
+        return sb.toString();
+    }
+
+    /**
+     * Добавить метрику с длительностью в миллисекундах с точностью до микросекунды
+     */
+    private static void append(StringBuilder sb, String name, long durationNanos) {
+        long micros = durationNanos / NANOS_IN_MICRO;
+        long fraction = micros % MICROS_IN_MILLI;
+        sb.append(name).append(";dur=").append(micros / MICROS_IN_MILLI).append('.');
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    private void reset() {
+        for (int i = 0; i < PHASES.length; i++) {
+            nanos[i] = 0L;
+            counts[i] = 0;
+        }
+        startNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.job4j.auth.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import ru.job4j.auth.repository.PersonRepository;
+
+/**
+ * ServerTimingConfig - включает заголовок Server-Timing, если задано свойство server-timing.enabled=true
+ *
+ * @author Ilya Kaltygin
+ */
+@Configuration
+@ConditionalOnProperty(name = "server-timing.enabled", havingValue = "true")
+public class ServerTimingConfig {
+
+    /**
+     * Регистрирует фильтр первым в цепочке, чтобы в total попала обработка всеми остальными фильтрами
+     *
+     * @param logSampleRate доля запросов, которые пишутся в лог
+     */
+    @Bean
+    public FilterRegistrationBean<ServerTimingFilter> serverTimingFilter(
+            @Value("${server-timing.log-sample-rate:0}") double logSampleRate) {
+        FilterRegistrationBean<ServerTimingFilter> registration =
+                new FilterRegistrationBean<>(new ServerTimingFilter(logSampleRate));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * Заменяет стандартный конвертер JSON конвертером, который измеряет сериализацию
+     *
+     * @param objectMapper функционал для работы с JSON
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJackson2HttpMessageConverter(objectMapper);
+    }
+
+    /**
+     * Оборачивает хранилище пользователей, чтобы измерять запросы к базе данных
+     */
+    @Bean
+    public static BeanPostProcessor personRepositoryTimingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof PersonRepository)) {
+                    return bean;
+                }
+                ProxyFactory factory = new ProxyFactory(bean);
+                factory.addAdvice((MethodInterceptor) invocation -> {
+                    long start = ServerTiming.start();
+                    try {
+                        return invocation.proceed();
+                    } finally {
+                        ServerTiming.stop(ServerTiming.Phase.DB, start);
+                    }
+                });
+                return factory.getProxy();
+            }
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package ru.job4j.auth.timing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ServerTimingFilter - измеряет фазы обработки запроса и добавляет в ответ заголовок Server-Timing.
+ * Заголовок записывается перед фиксацией ответа, поэтому в него попадают все фазы, завершившиеся до начала записи тела.
+ * Часть запросов дополнительно пишется в лог
+ *
+ * @author Ilya Kaltygin
+ */
+@Slf4j
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Server-Timing";
+
+    /**
+     * Доля запросов, которые пишутся в лог, от 0 до 1
+     */
+    private final double logSampleRate;
+
+    public ServerTimingFilter(double logSampleRate) {
+        this.logSampleRate = logSampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req,
+                                    HttpServletResponse res,
+                                    FilterChain chain) throws IOException, ServletException {
+        ServerTiming timing = ServerTiming.begin();
+        TimingResponseWrapper response = new TimingResponseWrapper(res, timing);
+        try {
+            chain.doFilter(req, response);
+        } finally {
+            response.writeHeader();
+            if (logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate) {
+                log.info("{} {} {} {}", req.getMethod(), req.getRequestURI(), res.getStatus(), timing.toHeader());
+            }
+            ServerTiming.end();
+        }
+    }
+
+    /**
+     * Обертка ответа, которая добавляет заголовок Server-Timing непосредственно перед записью тела
+     */
+    private static class TimingResponseWrapper extends HttpServletResponseWrapper {
+
+        private final ServerTiming timing;
+
+        private boolean headerWritten;
+
+        TimingResponseWrapper(HttpServletResponse response, ServerTiming timing) {
+            super(response);
+            this.timing = timing;
+        }
+
+        void writeHeader() {
+            if (!headerWritten && !isCommitted()) {
+                setHeader(HEADER, timing.toHeader());
+            }
+            headerWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeader();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.job4j.auth.timing;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ru.job4j.auth.jfr.PasswordEncoderEvent;
+
+/**
+ * TimedBCryptPasswordEncoder - BCryptPasswordEncoder, который измеряет хеширование и проверку паролей
+ * для заголовка Server-Timing и событий JFR
+ *
+ * @author Ilya Kaltygin
+ */
+public class TimedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        PasswordEncoderEvent event = new PasswordEncoderEvent("encode");
+        event.begin();
+        long start = ServerTiming.start();
+        try {
+            String encoded = super.encode(rawPassword);
+            event.commit(null, "encoded");
+            return encoded;
+        } finally {
+            ServerTiming.stop(ServerTiming.Phase.BCRYPT, start);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        PasswordEncoderEvent event = new PasswordEncoderEvent("matches");
+        event.begin();
+        long start = ServerTiming.start();
+        try {
+            boolean matches = super.matches(rawPassword, encodedPassword);
+            event.commit(null, matches ? "match" : "mismatch");
+            return matches;
+        } finally {
+            ServerTiming.stop(ServerTiming.Phase.BCRYPT, start);
+        }
+    }
+}
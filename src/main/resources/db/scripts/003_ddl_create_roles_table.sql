@@ -0,0 +1,9 @@
+create table roles
+(
+    id   serial primary key not null,
+    name varchar(50) unique not null
+);
+
+comment on table roles is 'Таблица с ролями пользователей';
+comment on column roles.id is 'Идентификатор';
+comment on column roles.name is 'Название роли';
\ No newline at end of file
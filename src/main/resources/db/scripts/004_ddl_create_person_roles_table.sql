@@ -0,0 +1,12 @@
+create table person_roles
+(
+    person_id int not null,
+    role_id   int not null,
+    primary key (person_id, role_id),
+    constraint fk_person_roles_person foreign key (person_id) references person (id) on delete cascade,
+    constraint fk_person_roles_role foreign key (role_id) references roles (id)
+);
+
+comment on table person_roles is 'Таблица связи пользователей и ролей';
+comment on column person_roles.person_id is 'Идентификатор пользователя';
+comment on column person_roles.role_id is 'Идентификатор роли';
\ No newline at end of file
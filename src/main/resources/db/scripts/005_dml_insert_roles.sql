@@ -0,0 +1,4 @@
+insert into roles (name) values ('ROLE_USER');
+insert into roles (name) values ('ROLE_ADMIN');
+insert into person_roles (person_id, role_id) select p.id, r.id from person p, roles r where r.name = 'ROLE_USER';
+insert into person_roles (person_id, role_id) select p.id, r.id from person p, roles r where p.login = 'parsentev' and r.name = 'ROLE_ADMIN';
\ No newline at end of file
@@ -0,0 +1,15 @@
+create table person_change
+(
+    seq       bigserial primary key not null,
+    person_id int not null,
+    login     varchar(2000),
+    operation varchar(10) not null,
+    created   timestamp not null
+);
+
+comment on table person_change is 'Журнал изменений пользователей';
+comment on column person_change.seq is 'Порядковый номер изменения';
+comment on column person_change.person_id is 'Идентификатор пользователя';
+comment on column person_change.login is 'Логин';
+comment on column person_change.operation is 'Тип изменения: CREATE, UPDATE, DELETE';
+comment on column person_change.created is 'Время изменения';
\ No newline at end of file
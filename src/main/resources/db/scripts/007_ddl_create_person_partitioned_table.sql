@@ -0,0 +1,76 @@
+--liquibase formatted sql
+
+--changeset job4j:007-1 dbms:postgresql
+create table person_partitioned
+(
+    id       int           not null default nextval('person_id_seq'),
+    login    varchar(2000) not null,
+    password varchar(2000),
+    primary key (login)
+) partition by hash (login);
+
+create table person_partitioned_0 partition of person_partitioned for values with (modulus 16, remainder 0);
+create table person_partitioned_1 partition of person_partitioned for values with (modulus 16, remainder 1);
+create table person_partitioned_2 partition of person_partitioned for values with (modulus 16, remainder 2);
+create table person_partitioned_3 partition of person_partitioned for values with (modulus 16, remainder 3);
+create table person_partitioned_4 partition of person_partitioned for values with (modulus 16, remainder 4);
+create table person_partitioned_5 partition of person_partitioned for values with (modulus 16, remainder 5);
+create table person_partitioned_6 partition of person_partitioned for values with (modulus 16, remainder 6);
+create table person_partitioned_7 partition of person_partitioned for values with (modulus 16, remainder 7);
+create table person_partitioned_8 partition of person_partitioned for values with (modulus 16, remainder 8);
+create table person_partitioned_9 partition of person_partitioned for values with (modulus 16, remainder 9);
+create table person_partitioned_10 partition of person_partitioned for values with (modulus 16, remainder 10);
+create table person_partitioned_11 partition of person_partitioned for values with (modulus 16, remainder 11);
+create table person_partitioned_12 partition of person_partitioned for values with (modulus 16, remainder 12);
+create table person_partitioned_13 partition of person_partitioned for values with (modulus 16, remainder 13);
+create table person_partitioned_14 partition of person_partitioned for values with (modulus 16, remainder 14);
+create table person_partitioned_15 partition of person_partitioned for values with (modulus 16, remainder 15);
+
+create index person_partitioned_id_idx on person_partitioned (id);
+
+comment on table person_partitioned is 'Таблица со пользователями, секционированная по хешу логина';
+comment on column person_partitioned.id is 'Идентификатор';
+comment on column person_partitioned.login is 'Логин';
+comment on column person_partitioned.password is 'Пароль';
+
+--changeset job4j:007-2 dbms:postgresql
+create table person_partition_migration
+(
+    id      int primary key not null,
+    last_id int             not null,
+    done    boolean         not null
+);
+
+insert into person_partition_migration (id, last_id, done) values (1, 0, false);
+
+comment on table person_partition_migration is 'Состояние переноса пользователей в секционированную таблицу';
+comment on column person_partition_migration.last_id is 'Идентификатор последнего перенесенного пользователя';
+comment on column person_partition_migration.done is 'Перенос завершен';
+
+--changeset job4j:007-3 dbms:postgresql splitStatements:false
+create or replace function person_partitioned_mirror() returns trigger as
+$$
+begin
+    if tg_op in ('UPDATE', 'DELETE') then
+        delete from person_partitioned where login = old.login;
+    end if;
+    if tg_op = 'DELETE' then
+        return old;
+    end if;
+    if new.login is not null then
+        insert into person_partitioned (id, login, password)
+        values (new.id, new.login, new.password)
+        on conflict (login) do update set id = excluded.id, password = excluded.password;
+    else
+        raise warning 'person % has no login and is not copied to person_partitioned', new.id;
+    end if;
+    return new;
+end;
+$$ language plpgsql;
+
+--changeset job4j:007-4 dbms:postgresql
+create trigger person_partitioned_mirror
+    after insert or update or delete
+    on person
+    for each row
+execute procedure person_partitioned_mirror();
\ No newline at end of file
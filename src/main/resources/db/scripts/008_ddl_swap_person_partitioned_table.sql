@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset job4j:008-1 dbms:postgresql
+--preconditions onFail:CONTINUE
+--precondition-sql-check expectedResult:1 select count(*) from person_partition_migration where done and not exists (select 1 from person where login is null)
+lock table person in access exclusive mode;
+drop trigger person_partitioned_mirror on person;
+drop function person_partitioned_mirror();
+alter table person_roles drop constraint fk_person_roles_person;
+alter table person rename to person_unpartitioned;
+alter table person_partitioned rename to person;
+alter sequence person_id_seq owned by person.id;
+delete from person_roles r where not exists (select 1 from person p where p.id = r.person_id);
+
+comment on table person is 'Таблица со пользователями, секционированная по хешу логина';
+comment on table person_roles is 'Таблица связи пользователей и ролей. Внешнего ключа на секционированную таблицу person нет: уникальность id не гарантируется ограничением, роли удаляются вместе с пользователем в PersonRepository.deleteRolesByPersonId';
+comment on table person_unpartitioned is 'Таблица со пользователями до секционирования, удаляется вручную после проверки';
\ No newline at end of file
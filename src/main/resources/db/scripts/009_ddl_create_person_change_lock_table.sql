@@ -0,0 +1,8 @@
+create table person_change_lock
+(
+    id int primary key not null
+);
+
+insert into person_change_lock (id) values (1);
+
+comment on table person_change_lock is 'Строка блокировки записи в журнал изменений пользователей';
@@ -0,0 +1,172 @@
+package ru.job4j.auth.cache;
+
+import org.junit.jupiter.api.Test;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.repository.PersonRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PersonCacheTest {
+
+    private final PersonRepository repository = mock(PersonRepository.class);
+
+    private final PersonCache cache = new PersonCache(repository, 100, 300, 1000);
+
+    @Test
+    void whenFoundThenServedFromCacheByIdAndLogin() {
+        when(repository.findById(1)).thenReturn(Optional.of(person(1, "ivan", "v1")));
+
+        assertThat(cache.findById(1)).map(Person::getPassword).contains("v1");
+        assertThat(cache.findById(1)).map(Person::getPassword).contains("v1");
+        assertThat(cache.findByLogin("ivan")).map(Person::getPassword).contains("v1");
+
+        verify(repository, times(1)).findById(1);
+        verify(repository, times(0)).findByLogin("ivan");
+    }
+
+    @Test
+    void whenEvictedByIdThenBothKeysReloaded() {
+        when(repository.findById(1)).thenReturn(Optional.of(person(1, "ivan", "v1")));
+        cache.findById(1);
+        when(repository.findById(1)).thenReturn(Optional.of(person(1, "ivan", "v2")));
+        when(repository.findByLogin("ivan")).thenReturn(Optional.of(person(1, "ivan", "v2")));
+
+        cache.evictById(1);
+
+        assertThat(cache.findByLogin("ivan")).map(Person::getPassword).contains("v2");
+        assertThat(cache.findById(1)).map(Person::getPassword).contains("v2");
+    }
+
+    @Test
+    void whenClearedThenReloaded() {
+        when(repository.findByLogin("ivan")).thenReturn(Optional.of(person(1, "ivan", "v1")));
+        cache.findByLogin("ivan");
+
+        cache.clear();
+        cache.findByLogin("ivan");
+
+        verify(repository, times(2)).findByLogin("ivan");
+    }
+
+    @Test
+    void whenNotFoundThenNotCached() {
+        when(repository.findById(1)).thenReturn(Optional.empty());
+
+        assertThat(cache.findById(1)).isEmpty();
+        assertThat(cache.findById(1)).isEmpty();
+
+        verify(repository, times(2)).findById(1);
+    }
+
+    /**
+     * Пользователь изменен на другом узле, пока его загрузка выполнялась:
+     * загруженная версия могла устареть и не должна остаться в кеше
+     */
+    @Test
+    void whenEvictedDuringLoadThenLoadedVersionNotCached() {
+        when(repository.findById(1))
+                .thenAnswer(i -> {
+                    cache.evictById(1);
+                    return Optional.of(person(1, "ivan", "v1"));
+                })
+                .thenReturn(Optional.of(person(1, "ivan", "v2")));
+
+        assertThat(cache.findById(1)).map(Person::getPassword).contains("v1");
+        assertThat(cache.findById(1)).map(Person::getPassword).contains("v2");
+        assertThat(cache.findById(1)).map(Person::getPassword).contains("v2");
+
+        verify(repository, times(2)).findById(1);
+    }
+
+    @Test
+    void whenOtherUserEvictedDuringLoadThenLoadedVersionNotCached() {
+        when(repository.findById(1))
+                .thenAnswer(i -> {
+                    cache.evictById(2);
+                    return Optional.of(person(1, "ivan", "v1"));
+                })
+                .thenReturn(Optional.of(person(1, "ivan", "v1")));
+
+        cache.findById(1);
+        cache.findById(1);
+
+        verify(repository, times(2)).findById(1);
+    }
+
+    /**
+     * Поток A начал загрузку, пользователь изменился, поток B пришел после изменения:
+     * B не присоединяется к загрузке A и не ждет ее, а получает новую версию; версия A не попадает в кеш.
+     * Ожидание чужой загрузки здесь дольше теста, поэтому присоединение B к загрузке A обнаружится по таймауту
+     */
+    @Test
+    void whenEvictedDuringConcurrentLoadThenLaterCallerGetsFreshValue() throws Exception {
+        PersonCache cache = new PersonCache(repository, 100, 300, 60_000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findById(1))
+                .thenAnswer(i -> {
+                    loading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(person(1, "ivan", "v1"));
+                })
+                .thenReturn(Optional.of(person(1, "ivan", "v2")));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Person>> first = pool.submit(() -> cache.findById(1));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            cache.evictById(1);
+
+            Future<Optional<Person>> second = pool.submit(() -> cache.findById(1));
+            assertThat(second.get(2, TimeUnit.SECONDS)).map(Person::getPassword).contains("v2");
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).map(Person::getPassword).contains("v1");
+            assertThat(cache.findById(1)).map(Person::getPassword).contains("v2");
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenConcurrentMissesThenRepositoryQueriedOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findByLogin("ivan")).thenAnswer(i -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(person(1, "ivan", "v1"));
+        });
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Optional<Person>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> cache.findByLogin("ivan")));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Optional<Person>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).map(Person::getPassword).contains("v1");
+            }
+            verify(repository, times(1)).findByLogin("ivan");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Person person(int id, String login, String password) {
+        return Person.builder().id(id).login(login).password(password).build();
+    }
+}
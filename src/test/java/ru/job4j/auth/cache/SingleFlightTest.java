@@ -0,0 +1,144 @@
+package ru.job4j.auth.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int THREADS = 16;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void whenConcurrentCallsForSameKeyThenLoaderRunsOnce() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(5000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<String> loader = () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        };
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(pool.submit(() -> flight.execute("key", loader, () -> "fallback")));
+        }
+        waitForCalls(flight, THREADS);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(flight.getDeduplicated()).isEqualTo(THREADS - 1);
+        assertThat(flight.getTimeouts()).isZero();
+    }
+
+    @Test
+    void whenDifferentKeysThenLoadsRunIndependently() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> blocked = pool.submit(() -> flight.execute("a", () -> {
+            await(release);
+            return "a";
+        }, () -> "fallback"));
+        waitForCalls(flight, 1);
+
+        assertThat(flight.execute("b", () -> "b", () -> "fallback")).isEqualTo("b");
+
+        release.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo("a");
+    }
+
+    @Test
+    void whenWaiterTimesOutThenFallbackUsed() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(50);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> slow = pool.submit(() -> flight.execute("key", () -> {
+            await(release);
+            return "value";
+        }, () -> "fallback"));
+        waitForCalls(flight, 1);
+
+        assertThat(flight.execute("key", () -> "second-loader", () -> "fallback")).isEqualTo("fallback");
+        assertThat(flight.getTimeouts()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+    }
+
+    @Test
+    void whenForgottenThenLaterCallStartsNewLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> first = pool.submit(() -> flight.execute("key", () -> {
+            await(release);
+            return "old";
+        }, () -> "fallback"));
+        waitForCalls(flight, 1);
+
+        flight.forget("key");
+
+        assertThat(flight.execute("key", () -> "new", () -> "fallback")).isEqualTo("new");
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("old");
+        assertThat(flight.getDeduplicated()).isZero();
+    }
+
+    @Test
+    void whenLoaderFailsThenWaitersGetException() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> failing = pool.submit(() -> flight.execute("key", () -> {
+            await(release);
+            throw new IllegalStateException("db down");
+        }, () -> "fallback"));
+        waitForCalls(flight, 1);
+        Future<String> waiter = pool.submit(() -> flight.execute("key", () -> "second", () -> "fallback"));
+        waitForCalls(flight, 2);
+
+        release.countDown();
+
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("db down");
+        assertThatThrownBy(() -> failing.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("db down");
+        assertThat(flight.execute("key", () -> "recovered", () -> "fallback")).isEqualTo("recovered");
+    }
+
+    /**
+     * Дождаться, пока указанное количество вызовов войдет в execute, и дать им присоединиться к загрузке
+     */
+    private static void waitForCalls(SingleFlight<?, ?> flight, int calls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.getCalls() < calls && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.job4j.auth.config;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.job4j.auth.controller.PersonController;
+import ru.job4j.auth.filter.RoleAuthorities;
+import ru.job4j.auth.service.PersonChangeFeed;
+import ru.job4j.auth.service.PersonService;
+import ru.job4j.auth.service.UserDetailsServiceImpl;
+
+import java.util.Date;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.HEADER_STRING;
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.SECRET;
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.TOKEN_PREFIX;
+
+@WebMvcTest(PersonController.class)
+class WebSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private PersonService personService;
+
+    @MockBean
+    private PersonChangeFeed changeFeed;
+
+    @MockBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @MockBean
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @MockBean
+    private SpringLiquibase liquibase;
+
+    @Test
+    void whenAdminTokenThenDeleteAllowed() throws Exception {
+        when(personService.delete(1)).thenReturn(true);
+
+        mockMvc.perform(delete("/person/1").header(HEADER_STRING, TOKEN_PREFIX + token(RoleAuthorities.ADMIN)))
+                .andExpect(status().isOk());
+        verify(personService).delete(1);
+    }
+
+    @Test
+    void whenUserTokenThenDeleteForbidden() throws Exception {
+        mockMvc.perform(delete("/person/1").header(HEADER_STRING, TOKEN_PREFIX + token(RoleAuthorities.USER)))
+                .andExpect(status().isForbidden());
+        verify(personService, never()).delete(anyInt());
+    }
+
+    @Test
+    void whenNoTokenThenDeleteForbidden() throws Exception {
+        mockMvc.perform(delete("/person/1"))
+                .andExpect(status().isForbidden());
+        verify(personService, never()).delete(anyInt());
+    }
+
+    private static String token(String... roles) {
+        return JWT.create()
+                .withSubject("parsentev")
+                .withArrayClaim(RoleAuthorities.ROLES_CLAIM, roles)
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC512(SECRET.getBytes()));
+    }
+}
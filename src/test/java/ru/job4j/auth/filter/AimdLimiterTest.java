@@ -0,0 +1,104 @@
+package ru.job4j.auth.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AimdLimiterTest {
+
+    @Test
+    void whenLimitReachedThenAcquireFails() {
+        AimdLimiter limiter = new AimdLimiter("test", 2, 1, 10, 1000);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+
+        limiter.release(System.nanoTime());
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void whenFastRequestsAtFullLoadThenLimitGrowsUpToMax() {
+        AimdLimiter limiter = new AimdLimiter("test", 4, 1, 10, 1000);
+
+        fillAndRelease(limiter, System.nanoTime());
+        assertThat(limiter.getLimit()).isGreaterThan(4);
+
+        for (int i = 0; i < 20; i++) {
+            fillAndRelease(limiter, System.nanoTime());
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void whenLightLoadThenLimitDoesNotGrow() {
+        AimdLimiter limiter = new AimdLimiter("test", 10, 1, 100, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(System.nanoTime());
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void whenBurstOfSlowRequestsThenLimitDecreasedOnce() {
+        AimdLimiter limiter = new AimdLimiter("test", 100, 1, 100, 1000);
+
+        fillAndRelease(limiter, slowStart(1000));
+
+        assertThat(limiter.getLimit()).isEqualTo(90);
+    }
+
+    @Test
+    void whenSlowRequestsInNextWindowThenLimitDecreasedAgain() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter("test", 100, 1, 100, 50);
+
+        fillAndRelease(limiter, slowStart(50));
+        Thread.sleep(60);
+        fillAndRelease(limiter, slowStart(50));
+
+        assertThat(limiter.getLimit()).isEqualTo(81);
+    }
+
+    @Test
+    void whenSlowRequestsKeepComingThenLimitNotBelowMin() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter("test", 6, 5, 10, 1);
+
+        for (int i = 0; i < 10; i++) {
+            fillAndRelease(limiter, slowStart(1));
+            Thread.sleep(2);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void whenInitialLimitOutOfBoundsThenClamped() {
+        assertThat(new AimdLimiter("test", 0, 2, 10, 1000).getLimit()).isEqualTo(2);
+        assertThat(new AimdLimiter("test", 50, 2, 10, 1000).getLimit()).isEqualTo(10);
+    }
+
+    /**
+     * Занять все места и освободить их с указанным временем начала
+     */
+    private static void fillAndRelease(AimdLimiter limiter, long startNanos) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(startNanos);
+        }
+    }
+
+    /**
+     * Время начала запроса, который выполнялся дольше допустимой задержки
+     */
+    private static long slowStart(long timeoutMs) {
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(timeoutMs * 2);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.job4j.auth.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    /**
+     * Лимит для входа - один запрос на ядро, для остальных запросов - один запрос
+     */
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 1, 1, 1000, 1, 1, 1, 1000, 2);
+
+    @Test
+    void whenApiLimitReachedThenServiceUnavailableWithRetryAfter() throws Exception {
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        AtomicInteger passed = new AtomicInteger();
+
+        filter.doFilter(request("GET", "/person/"), new MockHttpServletResponse(), (req, res) -> {
+            passed.incrementAndGet();
+            filter.doFilter(request("GET", "/person/1"), rejected, (r, s) -> passed.incrementAndGet());
+        });
+
+        assertThat(passed).hasValue(1);
+        assertThat(rejected.getStatus()).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("2");
+    }
+
+    @Test
+    void whenApiLimitReachedThenLoginUsesOwnLimit() throws Exception {
+        MockHttpServletResponse login = new MockHttpServletResponse();
+        AtomicInteger passed = new AtomicInteger();
+
+        filter.doFilter(request("GET", "/person/"), new MockHttpServletResponse(), (req, res) -> {
+            passed.incrementAndGet();
+            filter.doFilter(request("POST", ConcurrencyLimitFilter.LOGIN_URL), login, (r, s) -> passed.incrementAndGet());
+        });
+
+        assertThat(passed).hasValue(2);
+        assertThat(login.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+    }
+
+    @Test
+    void whenRequestCompletedThenSlotReleased() throws Exception {
+        AtomicInteger passed = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(request("GET", "/person/"), new MockHttpServletResponse(), (r, s) -> passed.incrementAndGet());
+        }
+        assertThat(passed).hasValue(3);
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return request;
+    }
+}
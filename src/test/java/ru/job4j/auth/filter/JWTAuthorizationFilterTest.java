@@ -0,0 +1,176 @@
+package ru.job4j.auth.filter;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.HEADER_STRING;
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.SECRET;
+import static ru.job4j.auth.filter.JWTAuthenticationFilter.TOKEN_PREFIX;
+
+class JWTAuthorizationFilterTest {
+
+    private final RejectedTokenCache rejectedTokens = spy(new RejectedTokenCache(16));
+
+    private final JWTAuthorizationFilter filter =
+            new JWTAuthorizationFilter(mock(AuthenticationManager.class), rejectedTokens);
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void whenValidTokenThenAuthenticatedWithRoles() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(sign(Algorithm.HMAC512(SECRET.getBytes())), chain);
+
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(chain.getRequest()).isNotNull();
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication.getPrincipal()).isEqualTo("ivan");
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void whenNoTokenThenPassedWithoutAuthentication() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    void whenTooShortThenRejectedWithoutVerification() throws Exception {
+        assertMalformed("a".repeat(40) + "." + "b".repeat(40) + "." + "c".repeat(10));
+    }
+
+    @Test
+    void whenTooLongThenRejectedWithoutVerification() throws Exception {
+        String token = valid();
+        int dot = token.indexOf('.');
+        assertMalformed(token.substring(0, dot + 1) + "a".repeat(5000) + token.substring(token.lastIndexOf('.')));
+    }
+
+    @Test
+    void whenWrongSegmentCountThenRejectedWithoutVerification() throws Exception {
+        String token = valid();
+        assertMalformed(token.replace('.', 'x'));
+        assertMalformed(token.substring(0, token.lastIndexOf('.')) + "a".repeat(90));
+        assertMalformed(token + ".extra");
+    }
+
+    @Test
+    void whenEmptySegmentThenRejectedWithoutVerification() throws Exception {
+        String token = valid();
+        assertMalformed(token.substring(0, token.lastIndexOf('.') + 1));
+        assertMalformed(token.substring(0, token.indexOf('.') + 1) + token.substring(token.lastIndexOf('.')) + "a".repeat(60));
+    }
+
+    @Test
+    void whenNotBase64UrlThenRejectedWithoutVerification() throws Exception {
+        String token = valid();
+        assertMalformed(token.substring(0, token.length() - 2) + "+/");
+    }
+
+    @Test
+    void whenOtherAlgorithmThenRejectedWithoutVerification() throws Exception {
+        assertMalformed(sign(Algorithm.HMAC256(SECRET.getBytes())));
+        assertMalformed(withHeader("{\"alg\":\"none\",\"typ\":\"JWT\"}"));
+    }
+
+    @Test
+    void whenHeaderTooLongThenRejectedWithoutVerification() throws Exception {
+        assertMalformed(withHeader("{\"alg\":\"HS512\",\"typ\":\"JWT\",\"kid\":\"" + "k".repeat(200) + "\"}"));
+    }
+
+    @Test
+    void whenBadSignatureThenRejectedAndNextTimeAnsweredFromCache() throws Exception {
+        String token = sign(Algorithm.HMAC512("other-secret".getBytes()));
+
+        MockHttpServletResponse first = filter(token, new MockFilterChain());
+        MockHttpServletResponse second = filter(token, new MockFilterChain());
+
+        assertThat(first.getStatus()).isEqualTo(HttpServletResponse.SC_UNAUTHORIZED);
+        assertThat(second.getStatus()).isEqualTo(HttpServletResponse.SC_UNAUTHORIZED);
+        assertThat(second.getHeader("WWW-Authenticate")).contains("invalid_token");
+        verify(rejectedTokens, times(1)).add(token);
+        verify(rejectedTokens, times(2)).contains(token);
+    }
+
+    @Test
+    void whenOtherTokenAfterRejectionThenStillVerified() throws Exception {
+        filter(sign(Algorithm.HMAC512("other-secret".getBytes())), new MockFilterChain());
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(valid(), chain);
+
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(chain.getRequest()).isNotNull();
+    }
+
+    private void assertMalformed(String token) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(token, chain);
+
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_UNAUTHORIZED);
+        assertThat(chain.getRequest()).isNull();
+        verify(rejectedTokens, never()).contains(anyString());
+        verify(rejectedTokens, never()).add(anyString());
+    }
+
+    private MockHttpServletResponse filter(String token, MockFilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HEADER_STRING, TOKEN_PREFIX + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static String valid() {
+        return sign(Algorithm.HMAC512(SECRET.getBytes()));
+    }
+
+    private static String sign(Algorithm algorithm) {
+        return JWT.create()
+                .withSubject("ivan")
+                .withArrayClaim(RoleAuthorities.ROLES_CLAIM, new String[] {RoleAuthorities.USER})
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(algorithm);
+    }
+
+    /**
+     * Действительный токен с подмененным заголовком
+     */
+    private static String withHeader(String json) {
+        String token = valid();
+        String header = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+        return header + token.substring(token.indexOf('.'));
+    }
+}
@@ -0,0 +1,44 @@
+package ru.job4j.auth.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RejectedTokenCacheTest {
+
+    @Test
+    void whenTokenAddedThenContained() {
+        RejectedTokenCache cache = new RejectedTokenCache(16);
+
+        cache.add("token");
+
+        assertThat(cache.contains("token")).isTrue();
+        assertThat(cache.contains("other")).isFalse();
+    }
+
+    /**
+     * В кеше из двух ячеек примерно половина токенов попадает в ячейку отклоненного токена.
+     * Отпечаток у них другой, поэтому ни один из них не считается отклоненным и будет проверен
+     */
+    @Test
+    void whenDifferentTokenSharesSlotThenNotContained() {
+        RejectedTokenCache cache = new RejectedTokenCache(2);
+        cache.add("rejected");
+
+        assertThat(IntStream.range(0, 10_000).mapToObj(i -> "token" + i))
+                .noneMatch(cache::contains);
+        assertThat(cache.contains("rejected")).isTrue();
+    }
+
+    @Test
+    void whenSlotReusedThenPreviousTokenEvicted() {
+        RejectedTokenCache cache = new RejectedTokenCache(1);
+        cache.add("first");
+
+        IntStream.range(0, 100).forEach(i -> cache.add("token" + i));
+
+        assertThat(cache.contains("first")).isFalse();
+    }
+}
@@ -0,0 +1,96 @@
+package ru.job4j.auth.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorSamplingTurboFilterTest {
+
+    private static final long PERIOD_MS = 1000;
+
+    private final Logger logger = new LoggerContext().getLogger("test");
+
+    private final ErrorSamplingTurboFilter filter = new ErrorSamplingTurboFilter();
+
+    @BeforeEach
+    void setUp() {
+        filter.setBurst(3);
+        filter.setSampleRate(5);
+        filter.setPeriodMs(PERIOD_MS);
+        filter.setMaxKeys(2);
+        filter.start();
+    }
+
+    @Test
+    void whenRepeatedErrorThenBurstAndEverySampleRateThPass() {
+        assertThat(passed("db error", 23)).isEqualTo(3 + 4);
+    }
+
+    @Test
+    void whenNextWindowThenBurstPassesAgain() throws InterruptedException {
+        passed("db error", 23);
+
+        Thread.sleep(PERIOD_MS + 50);
+
+        assertThat(passed("db error", 3)).isEqualTo(3);
+    }
+
+    @Test
+    void whenDifferentExceptionOrFormatThenCountedSeparately() {
+        passed("db error", 10);
+
+        assertThat(decide("db error", new IllegalArgumentException())).isEqualTo(FilterReply.NEUTRAL);
+        assertThat(decide("other error", new IllegalStateException())).isEqualTo(FilterReply.NEUTRAL);
+    }
+
+    @Test
+    void whenBelowWarnThenNeverSampled() {
+        long passed = IntStream.range(0, 50)
+                .filter(i -> filter.decide(null, logger, Level.INFO, "info", null, null) == FilterReply.NEUTRAL)
+                .count();
+
+        assertThat(passed).isEqualTo(50);
+    }
+
+    /**
+     * Достигнут предел ключей: новый ключ не отслеживается, а окна уже отслеживаемых ключей сохраняются
+     * и продолжают прореживать сообщения
+     */
+    @Test
+    void whenKeyLimitReachedThenExistingWindowsKept() {
+        passed("first", 10);
+        passed("second", 10);
+
+        assertThat(passed("third", 10)).isEqualTo(10);
+
+        assertThat(decide("first", new IllegalStateException())).isEqualTo(FilterReply.DENY);
+        assertThat(decide("second", new IllegalStateException())).isEqualTo(FilterReply.DENY);
+    }
+
+    @Test
+    void whenWindowsExpiredAtKeyLimitThenNewKeyTracked() throws InterruptedException {
+        passed("first", 10);
+        passed("second", 10);
+
+        Thread.sleep(PERIOD_MS + 50);
+
+        assertThat(passed("third", 10)).isEqualTo(3 + 1);
+    }
+
+    private long passed(String format, int count) {
+        return IntStream.range(0, count)
+                .filter(i -> decide(format, new IllegalStateException()) == FilterReply.NEUTRAL)
+                .count();
+    }
+
+    private FilterReply decide(String format, Throwable error) {
+        return filter.decide(null, logger, Level.ERROR, format, null, error);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.job4j.auth.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.repository.embedded.EmbeddedPersonRepository;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение пропускной способности JPA и встроенного хранилища пользователей.
+ * Запускается только явно: mvn test -Dtest=PersonRepositoryThroughputTest -Dbenchmark=true
+ */
+@Slf4j
+@SpringBootTest
+@TestPropertySource(locations = "classpath:application-test.properties")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PersonRepositoryThroughputTest {
+
+    private static final int PERSONS = 2_000;
+
+    private static final int READS = 200_000;
+
+    private static final int THREADS = 4;
+
+    @Autowired
+    private PersonRepository jpaRepository;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compareJpaAndEmbedded() throws Exception {
+        EmbeddedPersonRepository embedded = new EmbeddedPersonRepository(
+                dir.resolve("person.log").toString(), 3600, false);
+        embedded.open();
+        try {
+            String prefix = "bench" + System.nanoTime() + "_";
+            double jpaWrites = writes(jpaRepository, prefix);
+            double embeddedWrites = writes(embedded, prefix);
+            double jpaReads = reads(jpaRepository, prefix);
+            double embeddedReads = reads(embedded, prefix);
+            log.info("save: jpa {} ops/s, embedded {} ops/s", (long) jpaWrites, (long) embeddedWrites);
+            log.info("findByLogin ({} threads): jpa {} ops/s, embedded {} ops/s",
+                    THREADS, (long) jpaReads, (long) embeddedReads);
+            jpaRepository.findAll().stream()
+                    .filter(p -> p.getLogin().startsWith(prefix))
+                    .forEach(jpaRepository::delete);
+        } finally {
+            embedded.close();
+        }
+    }
+
+    private static double writes(PersonRepository repository, String prefix) {
+        long start = System.nanoTime();
+        for (int i = 0; i < PERSONS; i++) {
+            repository.save(Person.builder().login(prefix + i).password("password" + i).build());
+        }
+        return PERSONS * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static double reads(PersonRepository repository, String prefix) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < READS / THREADS; i++) {
+                        int n = ThreadLocalRandom.current().nextInt(PERSONS);
+                        assertThat(repository.findByLogin(prefix + n)).isPresent();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return READS * 1e9 / (System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.job4j.auth.repository.embedded;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntObjectIndexTest {
+
+    /**
+     * Начальная емкость индекса, для нее подбираются ключи с одинаковой ячейкой
+     */
+    private static final int CAPACITY = 1024;
+
+    @Test
+    void whenRemoveFromCollisionChainThenOtherKeysStillFound() {
+        List<Integer> keys = collidingKeys(CAPACITY - 1, 5);
+        IntObjectIndex<String> index = new IntObjectIndex<>();
+        keys.forEach(k -> index.put(k, "v" + k));
+
+        assertThat(index.remove(keys.get(1))).isEqualTo("v" + keys.get(1));
+        assertThat(index.remove(keys.get(3))).isEqualTo("v" + keys.get(3));
+
+        assertThat(index.get(keys.get(0))).isEqualTo("v" + keys.get(0));
+        assertThat(index.get(keys.get(1))).isNull();
+        assertThat(index.get(keys.get(2))).isEqualTo("v" + keys.get(2));
+        assertThat(index.get(keys.get(3))).isNull();
+        assertThat(index.get(keys.get(4))).isEqualTo("v" + keys.get(4));
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void whenRemoveMissingKeyFromChainThenNothingChanges() {
+        List<Integer> keys = collidingKeys(7, 4);
+        IntObjectIndex<String> index = new IntObjectIndex<>();
+        keys.subList(0, 3).forEach(k -> index.put(k, "v" + k));
+
+        assertThat(index.remove(keys.get(3))).isNull();
+        assertThat(index.size()).isEqualTo(3);
+        keys.subList(0, 3).forEach(k -> assertThat(index.get(k)).isEqualTo("v" + k));
+    }
+
+    @Test
+    void whenRandomPutsAndRemovesThenMatchesHashMap() {
+        Random random = new Random(42);
+        IntObjectIndex<Integer> index = new IntObjectIndex<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = 1 + random.nextInt(2000);
+            if (random.nextBoolean()) {
+                assertThat(index.put(key, i)).isEqualTo(expected.put(key, i));
+            } else {
+                assertThat(index.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+        assertThat(index.size()).isEqualTo(expected.size());
+        for (int key = 1; key <= 2000; key++) {
+            assertThat(index.get(key)).isEqualTo(expected.get(key));
+        }
+    }
+
+    /**
+     * Подобрать ключи, которые попадают в одну ячейку таблицы начальной емкости.
+     * Повторяет хеширование IntObjectIndex
+     */
+    private static List<Integer> collidingKeys(int slot, int count) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 1; keys.size() < count; key++) {
+            if (((key * 0x9E3779B9) & (CAPACITY - 1)) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
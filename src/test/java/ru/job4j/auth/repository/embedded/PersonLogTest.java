@@ -0,0 +1,118 @@
+package ru.job4j.auth.repository.embedded;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.job4j.auth.repository.embedded.PersonLog.LogRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void whenReopenThenAllRecordsReplayedInOrder() throws IOException {
+        Path path = dir.resolve("person.log");
+        try (PersonLog log = new PersonLog(path)) {
+            log.open(r -> { });
+            log.append(put(1, "first"));
+            log.append(put(2, "second"));
+            log.append(LogRecord.delete(1));
+        }
+        List<LogRecord> replayed = replay(path);
+        assertThat(replayed).extracting(LogRecord::getId).containsExactly(1, 2, 1);
+        assertThat(replayed).extracting(LogRecord::getType).containsExactly(PersonLog.PUT, PersonLog.PUT, PersonLog.DELETE);
+        assertThat(replayed.get(1).getLogin()).isEqualTo("second");
+        assertThat(replayed.get(1).getRoleNames()).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void whenTornRecordThenTailDiscardedAndNotResurrectedBySameSizeRecord() throws IOException {
+        Path path = dir.resolve("person.log");
+        int first;
+        int second;
+        try (PersonLog log = new PersonLog(path)) {
+            log.open(r -> { });
+            first = log.append(put(1, "user1"));
+            second = log.append(put(2, "user2"));
+            log.append(put(3, "user3"));
+        }
+        corrupt(path, first + second / 2);
+
+        assertThat(replay(path)).extracting(LogRecord::getId).containsExactly(1);
+
+        try (PersonLog log = new PersonLog(path)) {
+            log.open(r -> { });
+            assertThat(log.append(put(4, "user4"))).isEqualTo(second);
+        }
+        assertThat(replay(path)).extracting(LogRecord::getId).containsExactly(1, 4);
+    }
+
+    @Test
+    void whenCorruptLengthThenTailDiscarded() throws IOException {
+        Path path = dir.resolve("person.log");
+        int first;
+        try (PersonLog log = new PersonLog(path)) {
+            log.open(r -> { });
+            first = log.append(put(1, "user1"));
+            log.append(put(2, "user2"));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE), first);
+        }
+
+        assertThat(replay(path)).extracting(LogRecord::getId).containsExactly(1);
+    }
+
+    @Test
+    void whenCompactThenReopenSeesLiveRecordsAndLaterAppends() throws IOException {
+        Path path = dir.resolve("person.log");
+        try (PersonLog log = new PersonLog(path)) {
+            log.open(r -> { });
+            for (int i = 1; i <= 100; i++) {
+                log.append(put(i, "user" + i));
+            }
+            int before = log.size();
+            List<LogRecord> live = List.of(put(7, "user7"), put(42, "user42"));
+            log.compact(live);
+            assertThat(log.size()).isLessThan(before);
+            log.append(put(101, "user101"));
+        }
+
+        List<LogRecord> replayed = replay(path);
+        assertThat(replayed).extracting(LogRecord::getId).containsExactly(7, 42, 101);
+        assertThat(replayed).extracting(LogRecord::getLogin).containsExactly("user7", "user42", "user101");
+    }
+
+    private static LogRecord put(int id, String login) {
+        return new LogRecord(PersonLog.PUT, id, login, "$2a$10$" + "x".repeat(53),
+                new int[] {1}, new String[] {"ROLE_USER"});
+    }
+
+    private static List<LogRecord> replay(Path path) throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        try (PersonLog log = new PersonLog(path)) {
+            log.open(records::add);
+        }
+        return records;
+    }
+
+    private static void corrupt(Path path, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, offset);
+            one.put(0, (byte) ~one.get(0));
+            one.rewind();
+            channel.write(one, offset);
+        }
+    }
+}
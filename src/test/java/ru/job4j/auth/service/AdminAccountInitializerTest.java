@@ -0,0 +1,100 @@
+package ru.job4j.auth.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.job4j.auth.cache.PersonInvalidationBus;
+import ru.job4j.auth.model.ChangeType;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.model.Role;
+import ru.job4j.auth.repository.PersonRepository;
+import ru.job4j.auth.repository.RoleRepository;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdminAccountInitializerTest {
+
+    private static final Role USER = new Role(1, "ROLE_USER");
+
+    private static final Role ADMIN = new Role(2, "ROLE_ADMIN");
+
+    private final PersonRepository personRepository = mock(PersonRepository.class);
+
+    private final RoleRepository roleRepository = mock(RoleRepository.class);
+
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+
+    private final PersonChangeFeed changeFeed = mock(PersonChangeFeed.class);
+
+    private final PersonInvalidationBus invalidationBus = mock(PersonInvalidationBus.class);
+
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(roleRepository.findByName("ROLE_USER")).thenReturn(Optional.of(USER));
+        when(roleRepository.findByName("ROLE_ADMIN")).thenReturn(Optional.of(ADMIN));
+        when(personRepository.save(any(Person.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionTemplate.execute(any())).thenAnswer(i -> ((TransactionCallback<Object>) i.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void whenSeedAdminHasPlainPasswordThenPasswordIsHashed() {
+        Person seed = new Person(1, "parsentev", "123", new HashSet<>(Set.of(USER, ADMIN)));
+        when(personRepository.findByLogin("parsentev")).thenReturn(Optional.of(seed));
+
+        initializer("secret").init();
+
+        assertThat(passwordEncoder.matches("secret", seed.getPassword())).isTrue();
+        assertThat(seed.getRoles()).contains(USER, ADMIN);
+        verify(changeFeed).record(seed, ChangeType.UPDATE);
+        verify(invalidationBus).publish(1);
+    }
+
+    @Test
+    void whenAdminMissingThenCreatedWithAdminRole() {
+        when(personRepository.findByLogin("parsentev")).thenReturn(Optional.empty());
+
+        initializer("secret").init();
+
+        verify(personRepository).save(any(Person.class));
+        verify(changeFeed).record(any(Person.class), eq(ChangeType.CREATE));
+        verify(invalidationBus).publishLogin("parsentev");
+    }
+
+    @Test
+    void whenAdminAlreadyInitializedThenNothingChanges() {
+        Person admin = new Person(1, "parsentev", passwordEncoder.encode("secret"), new HashSet<>(Set.of(USER, ADMIN)));
+        when(personRepository.findByLogin("parsentev")).thenReturn(Optional.of(admin));
+
+        initializer("secret").init();
+
+        verify(personRepository, never()).save(any(Person.class));
+        verify(invalidationBus, never()).publish(1);
+    }
+
+    @Test
+    void whenPasswordNotSetThenAdminLeftUnchanged() {
+        initializer("").init();
+
+        verify(personRepository, never()).findByLogin(any());
+    }
+
+    private AdminAccountInitializer initializer(String password) {
+        return new AdminAccountInitializer(personRepository, roleRepository, passwordEncoder, changeFeed,
+                invalidationBus, mock(LoginBloomFilter.class), transactionTemplate, "parsentev", password);
+    }
+}
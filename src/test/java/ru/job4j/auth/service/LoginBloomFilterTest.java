@@ -0,0 +1,121 @@
+package ru.job4j.auth.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginBloomFilterTest {
+
+    @Test
+    void whenNotBuiltThenNotReady() {
+        LoginBloomFilter filter = new LoginBloomFilter(1000, 0.01);
+
+        assertThat(filter.isReady()).isFalse();
+    }
+
+    @Test
+    void whenLoginAddedThenMightContain() {
+        LoginBloomFilter filter = built(Stream.of("ivan", "petr"));
+
+        filter.add("anna");
+
+        assertThat(filter.isReady()).isTrue();
+        assertThat(filter.mightContain("ivan")).isTrue();
+        assertThat(filter.mightContain("petr")).isTrue();
+        assertThat(filter.mightContain("anna")).isTrue();
+    }
+
+    @Test
+    void whenLoginAddedByHashThenMightContain() {
+        String login = "очень-длинный-логин-".repeat(200);
+        LoginBloomFilter filter = built(Stream.empty());
+
+        filter.addHash(LoginBloomFilter.hash(login));
+
+        assertThat(filter.mightContain(login)).isTrue();
+    }
+
+    @Test
+    void whenLoginRemovedThenAbsentAndOthersKept() {
+        LoginBloomFilter filter = built(IntStream.range(0, 100).mapToObj(i -> "user" + i));
+
+        filter.remove("user42");
+
+        assertThat(filter.mightContain("user42")).isFalse();
+        IntStream.range(0, 100).filter(i -> i != 42)
+                .forEach(i -> assertThat(filter.mightContain("user" + i)).isTrue());
+    }
+
+    @Test
+    void whenSameLoginAddedTwiceThenOneRemoveKeepsIt() {
+        LoginBloomFilter filter = built(Stream.of("ivan"));
+
+        filter.add("ivan");
+        filter.remove("ivan");
+
+        assertThat(filter.mightContain("ivan")).isTrue();
+    }
+
+    @Test
+    void whenRemoveBeforeBuiltThenIgnored() {
+        LoginBloomFilter filter = new LoginBloomFilter(1000, 0.01);
+        filter.add("ivan");
+        filter.remove("ivan");
+
+        assertThat(filter.mightContain("ivan")).isTrue();
+    }
+
+    @Test
+    void whenFilledToExpectedInsertionsThenFalsePositiveRateNearFpp() {
+        int expected = 10_000;
+        LoginBloomFilter filter = new LoginBloomFilter(expected, 0.01);
+        filter.rebuild(() -> IntStream.range(0, expected).mapToObj(i -> "user" + i));
+
+        int probes = 100_000;
+        long falsePositives = IntStream.range(0, probes)
+                .filter(i -> filter.mightContain("absent" + i))
+                .count();
+
+        assertThat((double) falsePositives / probes).isLessThan(0.02);
+    }
+
+    @Test
+    void whenRebuiltThenRemovedLoginsGoneAndAddedDuringRebuildKept() {
+        LoginBloomFilter filter = built(Stream.of("old"));
+        AtomicBoolean readyDuringRebuild = new AtomicBoolean(true);
+
+        filter.rebuild(() -> {
+            readyDuringRebuild.set(filter.isReady());
+            filter.add("concurrent");
+            return Stream.of("ivan");
+        });
+
+        assertThat(readyDuringRebuild).isFalse();
+        assertThat(filter.isReady()).isTrue();
+        assertThat(filter.mightContain("old")).isFalse();
+        assertThat(filter.mightContain("ivan")).isTrue();
+        assertThat(filter.mightContain("concurrent")).isTrue();
+    }
+
+    @Test
+    void whenRebuildFailsThenFilterStaysNotReady() {
+        LoginBloomFilter filter = built(Stream.of("ivan"));
+
+        assertThatThrownBy(() -> filter.rebuild(() -> {
+            throw new IllegalStateException("connection lost");
+        })).hasMessage("connection lost");
+
+        assertThat(filter.isReady()).isFalse();
+    }
+
+    private static LoginBloomFilter built(Stream<String> logins) {
+        LoginBloomFilter filter = new LoginBloomFilter(1000, 0.01);
+        filter.rebuild(() -> logins);
+        return filter;
+    }
+}
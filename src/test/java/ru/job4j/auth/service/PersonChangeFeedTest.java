@@ -0,0 +1,124 @@
+package ru.job4j.auth.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.job4j.auth.model.ChangeType;
+import ru.job4j.auth.model.Person;
+import ru.job4j.auth.model.PersonChange;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class PersonChangeFeedTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private PersonChangeFeed feed;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:feed" + System.nanoTime() + ";MODE=PostgreSQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(
+                new ClassPathResource("db/scripts/006_ddl_create_person_change_table.sql"),
+                new ClassPathResource("db/scripts/009_ddl_create_person_change_lock_table.sql"))
+                .execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        feed = new PersonChangeFeed(jdbcTemplate, 500, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+        feed.shutdown();
+        jdbcTemplate.execute("drop all objects");
+    }
+
+    /**
+     * Транзакция A записывает изменение первой и фиксируется последней.
+     * Без блокировки транзакция B получила бы больший номер и стала бы видна раньше,
+     * курсор подписчика перешел бы через номер A, и изменение A не было бы доставлено
+     */
+    @Test
+    void whenEarlierTransactionCommitsLaterThenReaderNeverSeesLaterSeqFirst() throws Exception {
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        Future<?> first = pool.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            feed.record(person(1, "user1"), ChangeType.CREATE);
+            recorded.countDown();
+            await(commit);
+        }));
+        assertThat(recorded.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<?> second = pool.submit(() -> transactionTemplate.executeWithoutResult(
+                status -> feed.record(person(2, "user2"), ChangeType.UPDATE)));
+
+        Thread.sleep(300);
+        assertThat(second.isDone()).isFalse();
+        assertThat(feed.findSince(0)).isEmpty();
+
+        commit.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        assertThat(feed.findSince(0))
+                .extracting(PersonChange::getLogin)
+                .containsExactly("user1", "user2");
+        assertThat(feed.findSince(0))
+                .isSortedAccordingTo((a, b) -> Long.compare(a.getSeq(), b.getSeq()))
+                .allSatisfy(c -> assertThat(c.getCreated()).isNotNull());
+    }
+
+    @Test
+    void whenTransactionRolledBackThenLaterChangesStillDelivered() {
+        transactionTemplate.executeWithoutResult(status -> {
+            feed.record(person(1, "user1"), ChangeType.CREATE);
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> feed.record(person(2, "user2"), ChangeType.CREATE));
+
+        assertThat(feed.findSince(0))
+                .extracting(PersonChange::getLogin, PersonChange::getOperation)
+                .containsExactly(tuple("user2", ChangeType.CREATE));
+    }
+
+    @Test
+    void whenSinceGivenThenOnlyNewerChangesReturned() {
+        for (int i = 1; i <= 3; i++) {
+            int id = i;
+            transactionTemplate.executeWithoutResult(status -> feed.record(person(id, "user" + id), ChangeType.CREATE));
+        }
+        long cursor = feed.findSince(0).get(0).getSeq();
+
+        assertThat(feed.findSince(cursor)).extracting(PersonChange::getLogin).containsExactly("user2", "user3");
+    }
+
+    private static Person person(int id, String login) {
+        return Person.builder().id(id).login(login).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}